@@ -0,0 +1,128 @@
+package org.jonasfroeller.repositories;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.jonasfroeller.dtos.FuelDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.models.Fuel;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Reading every fuel record as DTOs: hydrating managed entities and mapping them (the read path before the
+// DTO projections) against the constructor-expression projection the GET endpoints use now. Needs the application
+// and its database, so it runs as a Quarkus test instead of a JMH benchmark:
+//   ./mvnw -Pbenchmark test -Dtest=ReadPathBenchmark [-Dbenchmark.rows=100000]
+// Prints the latency and the allocated and retained heap per read.
+@QuarkusTest
+public class ReadPathBenchmark {
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+    // Far above the ids the sequences hand out, so the rows do not collide with anything the tests create
+    private static final long FIRST_ID = 10_000_000;
+
+    @Inject
+    FuelRepository repository;
+
+    @Inject
+    DataSource dataSource;
+
+    @Test
+    public void compareReadPaths() throws SQLException {
+        insertRows();
+
+        measure("entities + mapping", this::readEntities);
+        measure("DTO projection", this::readProjection);
+    }
+
+    private List<FuelDTO> readEntities() {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<Fuel> fuel = repository.listAll();
+            return fuel.stream()
+                    .map(f -> new FuelDTO(f.id, f.quantity, f.fuelType.id, f.storageLocation.id,
+                            f.fuelType.name, f.storageLocation.name))
+                    .toList();
+        });
+    }
+
+    private List<FuelDTO> readProjection() {
+        return QuarkusTransaction.requiringNew().call(() -> repository.listAllDTOs(new PageRequest()).items);
+    }
+
+    private void measure(String name, Supplier<List<FuelDTO>> read) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            assertEquals(ROWS, read.get().size());
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] millis = new long[MEASURED_RUNS];
+        long[] allocated = new long[MEASURED_RUNS];
+        long[] retained = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long heapBefore = usedHeapAfterGc();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            List<FuelDTO> result = read.get();
+
+            millis[i] = (System.nanoTime() - start) / 1_000_000;
+            allocated[i] = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            // What stays reachable once the response is built: the result itself
+            retained[i] = usedHeapAfterGc() - heapBefore;
+            assertEquals(ROWS, result.size());
+        }
+
+        System.out.printf("%n%s, %,d rows: median %d ms (min %d, max %d), allocated %,d MB, retained %,d MB%n",
+                name, ROWS, median(millis), Arrays.stream(millis).min().orElse(0), Arrays.stream(millis).max().orElse(0),
+                median(allocated) / 1_048_576, median(retained) / 1_048_576);
+    }
+
+    private void insertRows() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("insert into storage_location (id, name, description) values (" + FIRST_ID
+                        + ", 'Benchmark cellar', null), (" + (FIRST_ID + 1) + ", 'Benchmark garage', null)");
+                statement.executeUpdate("insert into fuel_type (id, name) values (" + FIRST_ID
+                        + ", 'Benchmark diesel'), (" + (FIRST_ID + 1) + ", 'Benchmark petrol')");
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into fuel (id, quantity, fuel_type_id, storage_location_id) values (?, ?, ?, ?)")) {
+                for (int i = 0; i < ROWS; i++) {
+                    insert.setLong(1, FIRST_ID + i);
+                    insert.setDouble(2, 1 + i % 200);
+                    insert.setLong(3, FIRST_ID + i % 2);
+                    insert.setLong(4, FIRST_ID + (i / 2) % 2);
+                    insert.addBatch();
+                    if (i % 1000 == 999) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,122 @@
+package org.jonasfroeller.resources;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jonasfroeller.dtos.FoodDTO;
+import org.jonasfroeller.dtos.WeaponDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Encoding and decoding a 10k-row list as JSON against the BinaryFormats. The payload sizes (raw and gzipped,
+// as the field terminals would get them with HTTP compression) are printed once per format before the measurements.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({"food", "weapons"})
+    String payload;
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    private ObjectMapper mapper;
+    private JavaType listType;
+    private List<?> rows;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Configured like the application's mapper: ISO dates, unknown properties ignored
+        ObjectMapper json = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        BinaryFormats binaryFormats = new BinaryFormats(json);
+        mapper = switch (format) {
+            case "cbor" -> binaryFormats.mapperFor(BinaryFormats.CBOR_TYPE);
+            case "smile" -> binaryFormats.mapperFor(BinaryFormats.SMILE_TYPE);
+            default -> json;
+        };
+
+        if (payload.equals("food")) {
+            rows = food();
+            listType = mapper.getTypeFactory().constructCollectionType(List.class, FoodDTO.class);
+        } else {
+            rows = weapons();
+            listType = mapper.getTypeFactory().constructCollectionType(List.class, WeaponDTO.class);
+        }
+
+        encoded = mapper.writeValueAsBytes(rows);
+        System.out.printf("%n%s as %s: %,d bytes, %,d bytes gzipped%n", payload, format, encoded.length, gzipped(encoded));
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(rows);
+    }
+
+    @Benchmark
+    public List<?> decode() throws IOException {
+        return mapper.readValue(encoded, listType);
+    }
+
+    private static List<FoodDTO> food() {
+        String[] types = {"Rice", "Canned beans", "Pasta", "Dried fruit", "Oats", "Canned tuna", "Crackers", "Lentils"};
+        LocalDate start = LocalDate.of(2026, 1, 1);
+        List<FoodDTO> food = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            long location = 1 + i % 12;
+            food.add(new FoodDTO((long) i + 1, types[i % types.length], 0.5 + i % 40 * 0.25,
+                    start.plusDays(i % 900), location, "Storage room " + location));
+        }
+        return food;
+    }
+
+    private static List<WeaponDTO> weapons() {
+        String[] types = {"Pistol", "Rifle", "Shotgun", "Crossbow"};
+        String[] models = {"G17", "M1 Garand", "Remington 870", "Excalibur Micro", "P226", "AR-15"};
+        String[] ammunition = {"9mm FMJ", ".30-06 Springfield", "12 Gauge Buckshot", "Bolt", "9mm JHP", "5.56 NATO"};
+        List<WeaponDTO> weapons = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            long location = 1 + i % 12;
+            int model = i % models.length;
+            weapons.add(new WeaponDTO((long) i + 1, types[i % types.length], models[model], 1 + i % 5,
+                    (long) model + 1, location, ammunition[model], "Storage room " + location));
+        }
+        return weapons;
+    }
+
+    private static int gzipped(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,102 @@
+package org.jonasfroeller.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cost of getting updates into the frames of all sessions: serializing them for every session (as before)
+// against encoding each update once and sharing the frames between sessions that drain the same updates.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateEncodingBenchmark {
+
+    @Param({"1", "100", "2000"})
+    int sessions;
+
+    private ObjectMapper objectMapper;
+    private UpdateEncoder encoder;
+    private ResourceUpdateMessage message;
+    private List<EncodedUpdate> tenUpdates;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        encoder = new UpdateEncoder(objectMapper);
+        message = new ResourceUpdateMessage("UPDATE", "AmmunitionStock", 42L, 7L,
+                "AmmunitionStock updated: 9mm FMJ (Qty: 450)");
+
+        tenUpdates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tenUpdates.add(encoder.encode(message, EnumSet.allOf(FrameFormat.class)));
+        }
+    }
+
+    @Benchmark
+    public void serializePerSession(Blackhole blackhole) throws JsonProcessingException {
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(objectMapper.writeValueAsString(List.of(message)));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnceJson(Blackhole blackhole) {
+        List<EncodedUpdate> frame = List.of(encoder.encode(message, EnumSet.of(FrameFormat.JSON)));
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(encoder.jsonFrame(frame));
+        }
+    }
+
+    @Benchmark
+    public void encodeOnceCbor(Blackhole blackhole) {
+        List<EncodedUpdate> frame = List.of(encoder.encode(message, EnumSet.of(FrameFormat.CBOR)));
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(encoder.cborFrame(frame));
+        }
+    }
+
+    @Benchmark
+    public void serializeTenUpdatesPerSession(Blackhole blackhole) throws JsonProcessingException {
+        List<ResourceUpdateMessage> messages = tenUpdates.stream().map(update -> update.message).toList();
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(objectMapper.writeValueAsString(messages));
+        }
+    }
+
+    // Every session drains its own list of the same updates, as SessionOutbox.nextFrame does
+    @Benchmark
+    public void jsonFrameOfTenUpdates(Blackhole blackhole) {
+        FrameCache frames = new FrameCache(encoder);
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(frames.json(new ArrayList<>(tenUpdates)));
+        }
+    }
+
+    @Benchmark
+    public void cborFrameOfTenUpdates(Blackhole blackhole) {
+        FrameCache frames = new FrameCache(encoder);
+        for (int i = 0; i < sessions; i++) {
+            blackhole.consume(frames.cbor(new ArrayList<>(tenUpdates)));
+        }
+    }
+}
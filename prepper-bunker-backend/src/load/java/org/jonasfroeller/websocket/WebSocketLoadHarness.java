@@ -0,0 +1,333 @@
+package org.jonasfroeller.websocket;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Load harness for the update fan-out of a running instance (./mvnw quarkus:dev or the packaged jar):
+// opens many /ws/updates sessions, renames a storage location through the REST API at a fixed rate and
+// records for every session how long each rename takes to arrive, from sending the PUT to receiving the update.
+// Meanwhile it samples the CPU and heap of the server JVM over JMX, found with the attach API on the same machine.
+//
+//   ./mvnw -Pload-test test-compile exec:exec -Dload.sessions=5000 -Dload.rate=20 -Dload.duration=60
+public class WebSocketLoadHarness {
+
+    private static final String MARKER = "updated: load-";
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final int SESSIONS_PER_CLIENT = 1000;
+
+    private final URI baseUri;
+    private final int sessions;
+    private final int rate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int connectConcurrency;
+    private final Long serverPid;
+
+    private final HttpClient rest = HttpClient.newHttpClient();
+    private final ExecutorService listenerExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private final List<WebSocket> webSockets = new ArrayList<>();
+    // Send time of every rename by its number, 0 until sent
+    private AtomicLongArray sentAt;
+    private int warmupUpdates;
+    private final Histogram latency = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(60), 3);
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final AtomicInteger connectFailures = new AtomicInteger();
+    private final AtomicInteger closedByServer = new AtomicInteger();
+    private final Map<Integer, AtomicInteger> closeCodes = new HashMap<>();
+
+    WebSocketLoadHarness(Map<String, String> options) {
+        this.baseUri = URI.create(options.getOrDefault("url", "http://localhost:8069"));
+        this.sessions = Integer.parseInt(options.getOrDefault("sessions", "1000"));
+        this.rate = Integer.parseInt(options.getOrDefault("rate", "20"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        this.connectConcurrency = Integer.parseInt(options.getOrDefault("connect-concurrency", "200"));
+        String pid = options.get("pid");
+        this.serverPid = pid == null || pid.isBlank() ? null : Long.parseLong(pid);
+    }
+
+    // Arguments as --name=value: url, sessions, rate (renames per second), warmup and duration (seconds),
+    // connect-concurrency (handshakes in flight) and pid (of the server JVM, found by its name if omitted)
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new WebSocketLoadHarness(options).run();
+        System.exit(0);
+    }
+
+    void run() throws Exception {
+        long locationId = createStorageLocation();
+        ServerMonitor monitor = ServerMonitor.attach(serverPid);
+
+        connectSessions();
+        System.out.printf("%d sessions connected, %d failed%n", webSockets.size(), connectFailures.get());
+
+        warmupUpdates = rate * warmupSeconds;
+        int updates = warmupUpdates + rate * durationSeconds;
+        sentAt = new AtomicLongArray(updates);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+        AtomicInteger next = new AtomicInteger();
+        scheduler.scheduleAtFixedRate(() -> {
+            int number = next.getAndIncrement();
+            if (number < updates) {
+                rename(locationId, number);
+            }
+        }, 0, TimeUnit.SECONDS.toNanos(1) / rate, TimeUnit.NANOSECONDS);
+        if (monitor != null) {
+            scheduler.scheduleAtFixedRate(monitor::sample, 0, 1, TimeUnit.SECONDS);
+        }
+
+        long expected = (long) updates * webSockets.size();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds + durationSeconds);
+        while (System.nanoTime() < end) {
+            Thread.sleep(5000);
+            System.out.printf("%d of %d updates sent, %d deliveries, p99 %.1f ms%n",
+                    Math.min(next.get(), updates), updates, deliveries.sum(), latency.getValueAtPercentile(99) / 1e6);
+        }
+
+        // Whatever is still on its way gets a few seconds to arrive
+        long drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (deliveries.sum() < expected && System.nanoTime() < drainEnd) {
+            Thread.sleep(100);
+        }
+        scheduler.shutdownNow();
+
+        report(updates, expected, monitor);
+
+        webSockets.forEach(webSocket -> webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done"));
+        rest.send(HttpRequest.newBuilder(baseUri.resolve("/storage-locations/" + locationId)).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (monitor != null) {
+            monitor.close();
+        }
+    }
+
+    private long createStorageLocation() throws Exception {
+        HttpResponse<String> response = rest.send(HttpRequest.newBuilder(baseUri.resolve("/storage-locations"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"load-start\",\"description\":\"load harness\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher id = ID.matcher(response.body());
+        if (response.statusCode() != 201 || !id.find()) {
+            throw new IllegalStateException("Unable to create the storage location: " + response.statusCode() + " " + response.body());
+        }
+        return Long.parseLong(id.group(1));
+    }
+
+    // Handshakes are limited to connect-concurrency at a time, sessions are spread over several clients
+    // so a single selector thread does not read all of them
+    private void connectSessions() throws InterruptedException {
+        URI uri = URI.create(baseUri.toString().replaceFirst("^http", "ws")).resolve("/ws/updates");
+        Semaphore handshakes = new Semaphore(connectConcurrency);
+        List<CompletableFuture<WebSocket>> connecting = new ArrayList<>(sessions);
+        HttpClient client = null;
+        for (int i = 0; i < sessions; i++) {
+            if (i % SESSIONS_PER_CLIENT == 0) {
+                client = HttpClient.newBuilder().executor(listenerExecutor).build();
+            }
+            handshakes.acquire();
+            connecting.add(client.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .buildAsync(uri, new SessionListener())
+                    .whenComplete((webSocket, failure) -> {
+                        handshakes.release();
+                        if (failure != null) {
+                            connectFailures.incrementAndGet();
+                        } else {
+                            webSocket.sendText("{\"action\":\"subscribe\",\"resourceType\":\"StorageLocation\"}", true);
+                        }
+                    }));
+        }
+
+        for (CompletableFuture<WebSocket> future : connecting) {
+            try {
+                webSockets.add(future.join());
+            } catch (RuntimeException e) {
+                // counted in connectFailures
+            }
+        }
+    }
+
+    private void rename(long locationId, int number) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/storage-locations/" + locationId))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"name\":\"load-" + number + "\",\"description\":\"load harness\"}"))
+                .build();
+        sentAt.set(number, System.nanoTime());
+        rest.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            if (failure != null || response.statusCode() != 200) {
+                failedRequests.increment();
+            }
+        });
+    }
+
+    private void received(CharSequence frame) {
+        long now = System.nanoTime();
+        String text = frame.toString();
+        for (int at = text.indexOf(MARKER); at >= 0; at = text.indexOf(MARKER, at + 1)) {
+            int start = at + MARKER.length();
+            int end = start;
+            while (end < text.length() && Character.isDigit(text.charAt(end))) {
+                end++;
+            }
+            int number = Integer.parseInt(text, start, end, 10);
+            deliveries.increment();
+            long sent = number < sentAt.length() ? sentAt.get(number) : 0;
+            if (number >= warmupUpdates && sent != 0) {
+                latency.recordValue(Math.min(now - sent, latency.getHighestTrackableValue()));
+            }
+        }
+        for (int at = text.indexOf("\"RESYNC\""); at >= 0; at = text.indexOf("\"RESYNC\"", at + 1)) {
+            resyncs.increment();
+        }
+    }
+
+    private void report(int updates, long expected, ServerMonitor monitor) {
+        System.out.println();
+        System.out.printf("sessions   %d connected, %d failed to connect, %d closed by the server %s%n",
+                webSockets.size(), connectFailures.get(), closedByServer.get(), closeCodes);
+        System.out.printf("updates    %d sent (%d during warmup), %d failed requests%n", updates, warmupUpdates, failedRequests.sum());
+        System.out.printf("deliveries %d of %d (%d missing), %d resyncs%n",
+                deliveries.sum(), expected, expected - deliveries.sum(), resyncs.sum());
+        System.out.printf("latency    p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms (%d samples)%n",
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                latency.getValueAtPercentile(99.9) / 1e6, latency.getMaxValue() / 1e6, latency.getTotalCount());
+        if (monitor != null) {
+            System.out.printf("server     cpu avg %.0f%%, max %.0f%%, heap used max %d MB of %d MB%n",
+                    monitor.averageCpu() * 100, monitor.maxCpu * 100, monitor.maxHeapUsed >> 20, monitor.heapMax >> 20);
+        } else {
+            System.out.println("server     not sampled, no local server JVM found (pass --pid)");
+        }
+    }
+
+    private class SessionListener implements WebSocket.Listener {
+        private final StringBuilder partial = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            if (!last) {
+                partial.append(data);
+            } else if (partial.isEmpty()) {
+                received(data);
+            } else {
+                received(partial.append(data));
+                partial.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (statusCode != WebSocket.NORMAL_CLOSURE) {
+                closedByServer.incrementAndGet();
+                synchronized (closeCodes) {
+                    closeCodes.computeIfAbsent(statusCode, code -> new AtomicInteger()).incrementAndGet();
+                }
+            }
+            return null;
+        }
+    }
+
+    // CPU and heap of the server JVM, read through the management agent the attach API starts in it
+    private static final class ServerMonitor {
+        private final JMXConnector connector;
+        private final OperatingSystemMXBean os;
+        private final MemoryMXBean memory;
+        private double cpuTotal;
+        private int samples;
+        private double maxCpu;
+        private long maxHeapUsed;
+        private long heapMax;
+
+        private ServerMonitor(JMXConnector connector) throws Exception {
+            this.connector = connector;
+            MBeanServerConnection connection = connector.getMBeanServerConnection();
+            this.os = ManagementFactory.newPlatformMXBeanProxy(connection, ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME, OperatingSystemMXBean.class);
+            this.memory = ManagementFactory.newPlatformMXBeanProxy(connection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
+        }
+
+        // null if the server JVM cannot be found or attached to, the harness then only measures latency
+        static ServerMonitor attach(Long pid) {
+            try {
+                String id = pid != null ? pid.toString() : VirtualMachine.list().stream()
+                        .filter(vm -> vm.displayName().contains("quarkus") || vm.displayName().contains("prepper-bunker"))
+                        .map(VirtualMachineDescriptor::id)
+                        .findFirst().orElse(null);
+                if (id == null) {
+                    return null;
+                }
+                VirtualMachine vm = VirtualMachine.attach(id);
+                String address = vm.startLocalManagementAgent();
+                vm.detach();
+                System.out.println("Sampling CPU and heap of server JVM " + id);
+                return new ServerMonitor(JMXConnectorFactory.connect(new JMXServiceURL(address)));
+            } catch (Exception e) {
+                System.out.println("Unable to attach to the server JVM: " + e);
+                return null;
+            }
+        }
+
+        synchronized void sample() {
+            try {
+                double cpu = os.getProcessCpuLoad();
+                if (cpu >= 0) {
+                    cpuTotal += cpu;
+                    samples++;
+                    maxCpu = Math.max(maxCpu, cpu);
+                }
+                maxHeapUsed = Math.max(maxHeapUsed, memory.getHeapMemoryUsage().getUsed());
+                heapMax = memory.getHeapMemoryUsage().getMax();
+            } catch (RuntimeException e) {
+                // the server is gone, the report shows what was sampled until then
+            }
+        }
+
+        synchronized double averageCpu() {
+            return samples == 0 ? 0 : cpuTotal / samples;
+        }
+
+        void close() throws Exception {
+            connector.close();
+        }
+    }
+}
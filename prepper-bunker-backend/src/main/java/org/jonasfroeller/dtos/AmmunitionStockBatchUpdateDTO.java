@@ -0,0 +1,8 @@
+package org.jonasfroeller.dtos;
+
+import jakarta.validation.constraints.NotNull;
+
+public class AmmunitionStockBatchUpdateDTO extends AmmunitionStockCreateDTO {
+    @NotNull(message = "ID is required")
+    public Long id;
+}
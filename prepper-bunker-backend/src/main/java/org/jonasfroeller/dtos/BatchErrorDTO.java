@@ -0,0 +1,14 @@
+package org.jonasfroeller.dtos;
+
+public class BatchErrorDTO {
+    public int index;  // position of the item in the request body
+    public String error;
+
+    public BatchErrorDTO() {
+    }
+
+    public BatchErrorDTO(int index, String error) {
+        this.index = index;
+        this.error = error;
+    }
+}
@@ -0,0 +1,16 @@
+package org.jonasfroeller.dtos;
+
+import java.util.List;
+
+public class BatchResultDTO<T> {
+    public List<T> items;  // items that were written
+    public List<BatchErrorDTO> errors;  // items that were rejected
+
+    public BatchResultDTO() {
+    }
+
+    public BatchResultDTO(List<T> items, List<BatchErrorDTO> errors) {
+        this.items = items;
+        this.errors = errors;
+    }
+}
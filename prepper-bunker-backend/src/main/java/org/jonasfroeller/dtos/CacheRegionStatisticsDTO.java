@@ -0,0 +1,20 @@
+package org.jonasfroeller.dtos;
+
+public class CacheRegionStatisticsDTO {
+    public String region;  // entity class name or query results region
+    public long hits;
+    public long misses;
+    public long puts;
+    public long elementCount;  // entries currently held, -1 if the cache does not report it
+
+    public CacheRegionStatisticsDTO() {
+    }
+
+    public CacheRegionStatisticsDTO(String region, long hits, long misses, long puts, long elementCount) {
+        this.region = region;
+        this.hits = hits;
+        this.misses = misses;
+        this.puts = puts;
+        this.elementCount = elementCount;
+    }
+}
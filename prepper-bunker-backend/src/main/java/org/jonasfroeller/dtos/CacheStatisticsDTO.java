@@ -0,0 +1,32 @@
+package org.jonasfroeller.dtos;
+
+import java.time.Instant;
+import java.util.List;
+
+public class CacheStatisticsDTO {
+    public Instant since;  // start or last reset of the statistics
+    public long statementCount;  // SQL statements prepared since then, the database round-trips
+    public long secondLevelCacheHits;
+    public long secondLevelCacheMisses;
+    public long queryCacheHits;
+    public long queryCacheMisses;
+    public List<CacheRegionStatisticsDTO> regions;
+    public ResponseCacheStatisticsDTO responses;  // serialized responses of the hot list endpoints
+
+    public CacheStatisticsDTO() {
+    }
+
+    public CacheStatisticsDTO(Instant since, long statementCount,
+                              long secondLevelCacheHits, long secondLevelCacheMisses,
+                              long queryCacheHits, long queryCacheMisses,
+                              List<CacheRegionStatisticsDTO> regions, ResponseCacheStatisticsDTO responses) {
+        this.since = since;
+        this.statementCount = statementCount;
+        this.secondLevelCacheHits = secondLevelCacheHits;
+        this.secondLevelCacheMisses = secondLevelCacheMisses;
+        this.queryCacheHits = queryCacheHits;
+        this.queryCacheMisses = queryCacheMisses;
+        this.regions = regions;
+        this.responses = responses;
+    }
+}
@@ -0,0 +1,8 @@
+package org.jonasfroeller.dtos;
+
+import jakarta.validation.constraints.NotNull;
+
+public class DrinkBatchUpdateDTO extends DrinkCreateDTO {
+    @NotNull(message = "ID is required")
+    public Long id;
+}
@@ -0,0 +1,14 @@
+package org.jonasfroeller.dtos;
+
+public class ImportErrorDTO {
+    public long row;  // 1-based data row of the upload (CSV header not counted)
+    public String error;
+
+    public ImportErrorDTO() {
+    }
+
+    public ImportErrorDTO(long row, String error) {
+        this.row = row;
+        this.error = error;
+    }
+}
@@ -0,0 +1,40 @@
+package org.jonasfroeller.dtos;
+
+import java.time.Instant;
+
+public class ImportJobDTO {
+    public String id;
+    public String resourceType;
+    public String format;
+    public String status;  // "QUEUED", "RUNNING", "COMPLETED", "FAILED"
+    public int chunkSize;
+    public long rowsRead;
+    public long rowsImported;
+    public long rowsFailed;  // details are in the job's error file
+    public long chunksCommitted;
+    public String error;  // why the import stopped, only set if FAILED
+    public Instant createdAt;
+    public Instant startedAt;
+    public Instant finishedAt;
+
+    public ImportJobDTO() {
+    }
+
+    public ImportJobDTO(String id, String resourceType, String format, String status, int chunkSize,
+                        long rowsRead, long rowsImported, long rowsFailed, long chunksCommitted, String error,
+                        Instant createdAt, Instant startedAt, Instant finishedAt) {
+        this.id = id;
+        this.resourceType = resourceType;
+        this.format = format;
+        this.status = status;
+        this.chunkSize = chunkSize;
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsFailed = rowsFailed;
+        this.chunksCommitted = chunksCommitted;
+        this.error = error;
+        this.createdAt = createdAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+}
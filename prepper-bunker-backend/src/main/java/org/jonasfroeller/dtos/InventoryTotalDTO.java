@@ -0,0 +1,29 @@
+package org.jonasfroeller.dtos;
+
+public class InventoryTotalDTO {
+    public String resourceType;  // "Weapon", "Fuel", etc.
+
+    // Grouping keys, null when not grouped by them
+    public Long typeId;  // only set for resources with a type entity (FuelType, AmmunitionType)
+    public String typeName;
+    public Long storageLocationId;
+    public String storageLocationName;
+
+    public double totalQuantity;
+    public long itemCount;
+
+    public InventoryTotalDTO() {
+    }
+
+    public InventoryTotalDTO(String resourceType, Long typeId, String typeName,
+                             Long storageLocationId, String storageLocationName,
+                             double totalQuantity, long itemCount) {
+        this.resourceType = resourceType;
+        this.typeId = typeId;
+        this.typeName = typeName;
+        this.storageLocationId = storageLocationId;
+        this.storageLocationName = storageLocationName;
+        this.totalQuantity = totalQuantity;
+        this.itemCount = itemCount;
+    }
+}
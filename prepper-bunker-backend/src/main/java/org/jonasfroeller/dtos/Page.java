@@ -0,0 +1,26 @@
+package org.jonasfroeller.dtos;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+public class Page<T> {
+    public List<T> items;
+    public String nextCursor;  // null on the last page
+    public Long total;  // only set if requested
+    // Set instead of items for streamed requests: runs the query once the response is written, the stream must be closed
+    public Supplier<Stream<T>> stream;
+
+    public Page() {
+    }
+
+    public Page(List<T> items, String nextCursor, Long total) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.total = total;
+    }
+
+    public Page(Supplier<Stream<T>> stream) {
+        this.stream = stream;
+    }
+}
@@ -0,0 +1,36 @@
+package org.jonasfroeller.dtos;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.QueryParam;
+
+public class PageRequest {
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    @QueryParam("limit")
+    @Min(value = 1, message = "Limit must be at least 1")
+    @Max(value = 1000, message = "Limit cannot exceed 1000")
+    public Integer limit;  // no limit if not set
+
+    @QueryParam("after")
+    public String after;  // opaque cursor taken from the X-Next-Cursor header of the previous page
+
+    @QueryParam("sort")
+    public String sort;  // sort field, prefixed with "-" for descending order, "id" if not set
+
+    @QueryParam("includeTotal")
+    public boolean includeTotal;  // ignored when streaming
+
+    @QueryParam("stream")
+    public boolean stream;
+
+    @HeaderParam("Accept")
+    public String accept;
+
+    // Streamed requests are written as NDJSON (one DTO per line) while the rows are read,
+    // instead of building the whole list in memory first
+    public boolean isStreamed() {
+        return stream || (accept != null && accept.contains(APPLICATION_NDJSON));
+    }
+}
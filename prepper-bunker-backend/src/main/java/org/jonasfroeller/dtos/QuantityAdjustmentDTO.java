@@ -0,0 +1,9 @@
+package org.jonasfroeller.dtos;
+
+import jakarta.validation.constraints.NotNull;
+
+public class QuantityAdjustmentDTO {
+    // Negative to consume, positive to restock
+    @NotNull(message = "Delta is required")
+    public Double delta;
+}
@@ -1,18 +1,38 @@
 package org.jonasfroeller.dtos;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class ResourceUpdateMessage {
-    public String action;  // "CREATE", "UPDATE", "DELETE"
+    public Long sequence;  // position in the update stream, null for messages to a single client ("RESYNC", "ERROR")
+    public String action;  // "CREATE", "UPDATE", "DELETE", "EXPIRING", "EXPIRED", "RESYNC", "ERROR"
     public String resourceType;  // "Weapon", "Food", etc.
     public Long resourceId;
+    public Long storageLocationId;  // where the resource is stored (the location itself for "StorageLocation"), null if unknown
     public String message;
+    // The resource after the change (its DTO, a list of them for batches), only for clients connected with ?payload=full.
+    // Left out for deletes and for clients that only want to be told what changed.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Object data;
 
     public ResourceUpdateMessage() {
     }
 
     public ResourceUpdateMessage(String action, String resourceType, Long resourceId, String message) {
+        this(action, resourceType, resourceId, null, message);
+    }
+
+    public ResourceUpdateMessage(String action, String resourceType, Long resourceId, Long storageLocationId, String message) {
         this.action = action;
         this.resourceType = resourceType;
         this.resourceId = resourceId;
+        this.storageLocationId = storageLocationId;
         this.message = message;
     }
+
+    // The same update without its data, for clients that did not ask for it
+    public ResourceUpdateMessage withoutData() {
+        ResourceUpdateMessage summary = new ResourceUpdateMessage(action, resourceType, resourceId, storageLocationId, message);
+        summary.sequence = sequence;
+        return summary;
+    }
 }
\ No newline at end of file
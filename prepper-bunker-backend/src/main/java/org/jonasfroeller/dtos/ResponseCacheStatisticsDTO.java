@@ -0,0 +1,27 @@
+package org.jonasfroeller.dtos;
+
+public class ResponseCacheStatisticsDTO {
+    public long hits;
+    public long misses;
+    public double hitRate;  // 1.0 while nothing was requested
+    public long evictions;  // pushed out to stay within maxBytes
+    public long invalidations;  // removed because a change they depend on committed
+    public long entries;
+    public long bytes;  // estimated memory of the cached bodies
+    public long maxBytes;
+
+    public ResponseCacheStatisticsDTO() {
+    }
+
+    public ResponseCacheStatisticsDTO(long hits, long misses, double hitRate, long evictions, long invalidations,
+                                      long entries, long bytes, long maxBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.hitRate = hitRate;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.bytes = bytes;
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,16 @@
+package org.jonasfroeller.dtos;
+
+import java.util.Map;
+
+public class SnapshotRestoreDTO {
+    public Map<String, Long> restoredRows;  // by table name
+    public long totalRows;
+
+    public SnapshotRestoreDTO() {
+    }
+
+    public SnapshotRestoreDTO(Map<String, Long> restoredRows, long totalRows) {
+        this.restoredRows = restoredRows;
+        this.totalRows = totalRows;
+    }
+}
@@ -0,0 +1,22 @@
+package org.jonasfroeller.dtos;
+
+// Sent by WebSocket clients to choose the updates they receive, e.g.
+// {"action": "subscribe", "resourceType": "Fuel", "storageLocationId": 3}
+// and, after reconnecting and subscribing again, to get the updates missed in between:
+// {"action": "resume", "lastSequence": 1234}
+public class SubscriptionMessage {
+    public String action;  // "subscribe", "unsubscribe", "resume"
+    public String resourceType;  // null for every resource type
+    public Long storageLocationId;  // null for every storage location
+    public Long lastSequence;  // "resume" only, sequence of the last update the client received
+
+    public SubscriptionMessage() {
+    }
+
+    public SubscriptionMessage(String action, String resourceType, Long storageLocationId, Long lastSequence) {
+        this.action = action;
+        this.resourceType = resourceType;
+        this.storageLocationId = storageLocationId;
+        this.lastSequence = lastSequence;
+    }
+}
@@ -0,0 +1,44 @@
+package org.jonasfroeller.dtos;
+
+public class WebSocketStatisticsDTO {
+    public int sessions;
+    public int queuedMessages;  // waiting in all session queues right now
+    public int maxQueueDepth;  // fullest session queue right now
+    public int queueCapacity;
+    public long framesSent;
+    public long messagesSent;
+    public long messagesEncoded;  // serializations, one per broadcast message and wire format in use
+    public long messagesDropped;  // dropped from full queues, including those of disconnected sessions
+    public long sessionsDisconnected;  // closed because their queue was full
+    public long lastSequence;  // sequence number of the latest broadcast update
+    public int replayCapacity;  // updates kept for resuming clients
+    public long messagesReplayed;
+    public long resyncsRequired;  // resumes that could not be served from the replay buffer
+    public int streams;  // server-sent event subscribers of /updates/stream
+    public long streamsCutOff;  // streams ended because their subscriber fell more than queueCapacity updates behind
+
+    public WebSocketStatisticsDTO() {
+    }
+
+    public WebSocketStatisticsDTO(int sessions, int queuedMessages, int maxQueueDepth, int queueCapacity,
+                                  long framesSent, long messagesSent, long messagesEncoded,
+                                  long messagesDropped, long sessionsDisconnected,
+                                  long lastSequence, int replayCapacity, long messagesReplayed, long resyncsRequired,
+                                  int streams, long streamsCutOff) {
+        this.sessions = sessions;
+        this.queuedMessages = queuedMessages;
+        this.maxQueueDepth = maxQueueDepth;
+        this.queueCapacity = queueCapacity;
+        this.framesSent = framesSent;
+        this.messagesSent = messagesSent;
+        this.messagesEncoded = messagesEncoded;
+        this.messagesDropped = messagesDropped;
+        this.sessionsDisconnected = sessionsDisconnected;
+        this.lastSequence = lastSequence;
+        this.replayCapacity = replayCapacity;
+        this.messagesReplayed = messagesReplayed;
+        this.resyncsRequired = resyncsRequired;
+        this.streams = streams;
+        this.streamsCutOff = streamsCutOff;
+    }
+}
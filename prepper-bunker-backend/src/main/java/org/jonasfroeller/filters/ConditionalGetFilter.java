@@ -0,0 +1,74 @@
+package org.jonasfroeller.filters;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.jonasfroeller.services.TableVersions;
+
+// Conditional GETs for @ETagged endpoints. The ETag comes from the TableVersions of the resource types the endpoint reads,
+// a request whose If-None-Match still matches is answered with 304 before the resource method (and its query) runs.
+// The tag is taken before the data is read, so it can only be older than the data it is sent with, never newer.
+@Provider
+@ETagged
+public class ConditionalGetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String TAG = ConditionalGetFilter.class.getName() + ".tag";
+    // Clients may keep the response but have to ask whether it is still current every time
+    private static final String REVALIDATE = "no-cache";
+
+    @Inject
+    TableVersions tableVersions;
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        ETagged tagged = resourceInfo.getResourceMethod().getAnnotation(ETagged.class);
+        if (tagged == null || !HttpMethod.GET.equals(requestContext.getMethod())) {
+            return;
+        }
+
+        // The same URL has a representation per Accept header (JSON or NDJSON pages), each needs its own strong tag
+        String accept = requestContext.getHeaderString(HttpHeaders.ACCEPT);
+        String version = tableVersions.tag(tagged.value());
+        EntityTag tag = new EntityTag(accept == null ? version : version + "-" + Integer.toHexString(accept.hashCode()));
+        requestContext.setProperty(TAG, tag);
+
+        if (matches(requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH), tag)) {
+            requestContext.abortWith(Response.notModified(tag).header(HttpHeaders.CACHE_CONTROL, REVALIDATE).build());
+        }
+    }
+
+    // If-None-Match compares weakly, so a W/ a proxy put in front of our tag still matches
+    private static boolean matches(String ifNoneMatch, EntityTag tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String quoted = "\"" + tag.getValue() + "\"";
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(quoted) || trimmed.equals("W/" + quoted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object tag = requestContext.getProperty(TAG);
+        if (tag != null && responseContext.getStatus() == Response.Status.OK.getStatusCode()) {
+            responseContext.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+            responseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+        }
+    }
+}
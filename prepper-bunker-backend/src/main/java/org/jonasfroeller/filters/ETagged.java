@@ -0,0 +1,17 @@
+package org.jonasfroeller.filters;
+
+import jakarta.ws.rs.NameBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a GET endpoint whose response only changes with the given resource types (see ConditionalGetFilter)
+@NameBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ETagged {
+    // The resource types the response is read from, e.g. Fuel also shows fuel type and storage location names
+    String[] value() default {};
+}
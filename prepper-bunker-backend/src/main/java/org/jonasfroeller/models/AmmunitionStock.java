@@ -2,20 +2,26 @@ package org.jonasfroeller.models;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "ammunition_stock")
+@NamedEntityGraph(name = AmmunitionStock.WITH_AMMUNITION_TYPE, attributeNodes = @NamedAttributeNode("ammunitionType"))
 public class AmmunitionStock extends PanacheEntity {
+    public static final String WITH_AMMUNITION_TYPE = "AmmunitionStock.withAmmunitionType";
+
     public int quantity;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "ammunition_type_id")
     public AmmunitionType ammunitionType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "storage_location_id")
     public StorageLocation storageLocation;
 }
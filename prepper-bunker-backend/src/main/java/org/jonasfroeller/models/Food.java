@@ -14,7 +14,7 @@ public class Food extends PanacheEntity {
     @Column(name = "expiration_date")
     public LocalDate expirationDate;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "storage_location_id")
     public StorageLocation storageLocation;
 }
@@ -2,20 +2,26 @@ package org.jonasfroeller.models;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "fuel")
+@NamedEntityGraph(name = Fuel.WITH_FUEL_TYPE, attributeNodes = @NamedAttributeNode("fuelType"))
 public class Fuel extends PanacheEntity {
+    public static final String WITH_FUEL_TYPE = "Fuel.withFuelType";
+
     public double quantity;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "fuel_type_id")
     public FuelType fuelType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "storage_location_id")
     public StorageLocation storageLocation;
 }
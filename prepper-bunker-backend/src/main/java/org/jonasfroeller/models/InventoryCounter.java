@@ -0,0 +1,61 @@
+package org.jonasfroeller.models;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// Running total of one resource type, type and storage location, derived from the item tables
+@Entity
+@Table(name = "inventory_counter")
+@IdClass(InventoryCounter.Key.class)
+public class InventoryCounter extends PanacheEntityBase {
+    @Id
+    @Column(name = "resource_type")
+    public String resourceType;
+
+    @Id
+    @Column(name = "type_key")
+    public String typeKey;
+
+    @Id
+    @Column(name = "storage_location_id")
+    public long storageLocationId;
+
+    @Column(name = "total_quantity")
+    public double totalQuantity;
+
+    @Column(name = "item_count")
+    public long itemCount;
+
+    public static class Key implements Serializable {
+        public String resourceType;
+        public String typeKey;
+        public long storageLocationId;
+
+        public Key() {
+        }
+
+        public Key(String resourceType, String typeKey, long storageLocationId) {
+            this.resourceType = resourceType;
+            this.typeKey = typeKey;
+            this.storageLocationId = storageLocationId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && storageLocationId == key.storageLocationId &&
+                    resourceType.equals(key.resourceType) && typeKey.equals(key.typeKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceType, typeKey, storageLocationId);
+        }
+    }
+}
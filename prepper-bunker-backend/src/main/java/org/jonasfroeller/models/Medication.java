@@ -16,7 +16,7 @@ public class Medication extends PanacheEntity {
 
     public String purpose;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "storage_location_id")
     public StorageLocation storageLocation;
 }
@@ -1,10 +1,12 @@
 package org.jonasfroeller.models;
 
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 
 @Entity
+@Cacheable
 @Table(name = "storage_location")
 public class StorageLocation extends PanacheEntity {
     public String name;
@@ -2,22 +2,68 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+import org.jonasfroeller.dtos.AmmunitionStockDTO;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.AmmunitionStock;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class AmmunitionStockRepository implements PanacheRepository<AmmunitionStock> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("AmmunitionStock", "left join e.ammunitionType t", "t.id", "concat(t.caliber, ' ', t.type)", "e.quantity");
+
+    private static final DTOQuery<AmmunitionStockDTO> DTO_QUERY = new DTOQuery<>(AmmunitionStockDTO.class,
+            "new org.jonasfroeller.dtos.AmmunitionStockDTO(s.id, s.quantity, a.id, l.id, " +
+                    "concat(a.caliber, ' ', a.type), l.name)",
+            "AmmunitionStock s left join AmmunitionType a on a.id = s.ammunitionType.id left join StorageLocation l on l.id = s.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("s.id", Long.class, dto -> dto.id),
+                    "quantity", new SortField<>("s.quantity", Integer.class, dto -> dto.quantity)
+            ));
+
+    // Find all ammunition stocks as DTOs
+    public Page<AmmunitionStockDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find ammunition stock by ID as DTO
+    public AmmunitionStockDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "s.id = ?1", id);
+    }
+
+    // Find ammunition stock by ID, locked for update, with its ammunition type loaded in the same select
+    public AmmunitionStock lockByIdWithAmmunitionType(Long id) {
+        return getEntityManager().find(AmmunitionStock.class, id, LockModeType.PESSIMISTIC_WRITE,
+                Map.of("jakarta.persistence.fetchgraph", getEntityManager().getEntityGraph(AmmunitionStock.WITH_AMMUNITION_TYPE)));
+    }
+
     // Find ammunition stocks by location
-    public List<AmmunitionStock> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<AmmunitionStockDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "s.storageLocation.id = ?1", storageLocationId);
+    }
+
+    // Get total quantities of ammunition stocks, grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
+    }
+
+    // Find several ammunition stocks by ID with one query, keyed by ID
+    public Map<Long, AmmunitionStock> findByIds(Collection<Long> ids) {
+        return EntityLookup.byIds(this, AmmunitionStock.class, ids);
+    }
+
+    // Find several ammunition stocks by ID with one query, locked for update, keyed by ID
+    public Map<Long, AmmunitionStock> lockByIds(Collection<Long> ids) {
+        return EntityLookup.lockByIds(this, AmmunitionStock.class, ids);
     }
 
-    // Get total quantity of an ammunition type across all stocks
-    public int getTotalQuantityByType(Long ammunitionTypeId) {
-        return find("ammunitionType.id", ammunitionTypeId)
-                .stream()
-                .mapToInt(stock -> stock.quantity)
-                .sum();
+    // Add a signed delta to the quantity of a ammunition stock, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, int delta) {
+        return QuantityUpdate.add(getEntityManager(), "AmmunitionStock", id, delta);
     }
-}
\ No newline at end of file
+}
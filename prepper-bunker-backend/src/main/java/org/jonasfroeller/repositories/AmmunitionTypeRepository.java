@@ -2,9 +2,39 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.AmmunitionTypeDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.AmmunitionType;
 
+import java.util.Collection;
+import java.util.Map;
+
 @ApplicationScoped
 public class AmmunitionTypeRepository implements PanacheRepository<AmmunitionType> {
     // Basic CRUD operations are inherited from PanacheRepository
-}
\ No newline at end of file
+
+    private static final DTOQuery<AmmunitionTypeDTO> DTO_QUERY = new DTOQuery<>(AmmunitionTypeDTO.class,
+            "new org.jonasfroeller.dtos.AmmunitionTypeDTO(a.id, a.caliber, a.type)",
+            "AmmunitionType a",
+            Map.of(
+                    "id", new SortField<>("a.id", Long.class, dto -> dto.id),
+                    "caliber", SortField.ofString("a.caliber", dto -> dto.caliber),
+                    "type", SortField.ofString("a.type", dto -> dto.type)
+            )).cached();
+
+    // Find all ammunition types as DTOs
+    public Page<AmmunitionTypeDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find ammunition type by ID as DTO
+    public AmmunitionTypeDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "a.id = ?1", id);
+    }
+
+    // Find several ammunition types by ID with one query, keyed by ID
+    public Map<Long, AmmunitionType> findByIds(Collection<Long> ids) {
+        return EntityLookup.byIds(this, AmmunitionType.class, ids);
+    }
+}
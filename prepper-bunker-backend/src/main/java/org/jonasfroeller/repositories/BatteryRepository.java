@@ -2,27 +2,56 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.BatteryDTO;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.Battery;
 
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class BatteryRepository implements PanacheRepository<Battery> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Battery", null, null, "e.type", "e.quantity");
+
+    private static final DTOQuery<BatteryDTO> DTO_QUERY = new DTOQuery<>(BatteryDTO.class,
+            "new org.jonasfroeller.dtos.BatteryDTO(b.id, b.type, b.capacity, b.quantity, l.id, l.name)",
+            "Battery b left join StorageLocation l on l.id = b.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("b.id", Long.class, dto -> dto.id),
+                    "type", SortField.ofString("b.type", dto -> dto.type),
+                    "capacity", new SortField<>("b.capacity", Double.class, dto -> dto.capacity),
+                    "quantity", new SortField<>("b.quantity", Integer.class, dto -> dto.quantity)
+            ));
+
+    // Find all batteries as DTOs
+    public Page<BatteryDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find battery by ID as DTO
+    public BatteryDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "b.id = ?1", id);
+    }
+
     // Find batteries by storage location
-    public List<Battery> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<BatteryDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "b.storageLocation.id = ?1", storageLocationId);
     }
 
     // Find batteries by type
-    public List<Battery> findByType(String type) {
-        return find("type", type).list();
+    public Page<BatteryDTO> findByType(String type, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "b.type = ?1", type);
+    }
+
+    // Get total quantities of batteries, grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
     }
 
-    // Get total quantity of a specific battery type
-    public int getTotalQuantityByType(String type) {
-        return find("type", type)
-                .stream()
-                .mapToInt(battery -> battery.quantity)
-                .sum();
+    // Add a signed delta to the quantity of a battery, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, int delta) {
+        return QuantityUpdate.add(getEntityManager(), "Battery", id, delta);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package org.jonasfroeller.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Read path: builds DTOs directly with a JPQL constructor expression in one joined select,
+// so list endpoints neither hydrate managed entities nor fire extra selects for their associations.
+// Pages are read with keyset conditions ("sort value, id" after the cursor), so deep pages cost the same as the first one.
+public class DTOQuery<T> {
+    private static final String ID = "id";
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final Class<T> dtoClass;
+    private final String select;
+    private final String from;
+    private final Map<String, SortField<T>> sortFields;
+    private final boolean cacheable;
+
+    // select is the constructor expression, from the entity with its joins,
+    // sortFields the whitelist of sortable fields, which must contain "id".
+    // References are joined as entity joins on the foreign key ("left join StorageLocation l on l.id = f.storageLocation.id"),
+    // so filters like "f.storageLocation.id = ?1" stay on the indexed foreign key column
+    public DTOQuery(Class<T> dtoClass, String select, String from, Map<String, SortField<T>> sortFields) {
+        this(dtoClass, select, from, sortFields, false);
+    }
+
+    private DTOQuery(Class<T> dtoClass, String select, String from, Map<String, SortField<T>> sortFields, boolean cacheable) {
+        this.dtoClass = dtoClass;
+        this.select = select;
+        this.from = from;
+        this.sortFields = sortFields;
+        this.cacheable = cacheable;
+    }
+
+    // Same query with its results kept in the Hibernate query cache, which drops them whenever
+    // one of the queried tables is written through Hibernate. Only worth it for rarely changing tables.
+    public DTOQuery<T> cached() {
+        return new DTOQuery<>(dtoClass, select, from, sortFields, true);
+    }
+
+    public Page<T> page(EntityManager entityManager, PageRequest request) {
+        return page(entityManager, request, null);
+    }
+
+    public Page<T> page(EntityManager entityManager, PageRequest request, String where, Object... params) {
+        String sort = request.sort == null || request.sort.isBlank() ? ID : request.sort.trim();
+        boolean descending = sort.startsWith("-");
+        SortField<T> sortField = sortFields.get(descending ? sort.substring(1) : sort);
+        if (sortField == null) {
+            throw new InvalidPageRequestException("Invalid sort field: " + sort + ". Allowed values are: " +
+                    String.join(", ", new TreeSet<>(sortFields.keySet())) + " (prefix with - for descending order).");
+        }
+        SortField<T> idField = sortFields.get(ID);
+        String direction = descending ? " desc" : " asc";
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> values = new ArrayList<>(List.of(params));
+        if (where != null) {
+            conditions.add("(" + where + ")");
+        }
+        if (request.after != null) {
+            String[] cursor = decodeCursor(request.after, sort);
+            String operator = descending ? " < ?" : " > ?";
+            int idParam = values.size() + 1;
+            values.add(parseCursorValue(idField, cursor[1], request.after));
+            if (sortField == idField) {
+                conditions.add(idField.path() + operator + idParam);
+            } else if (cursor[0] == null) {
+                if (!sortField.nullable()) {
+                    throw new InvalidPageRequestException("Invalid cursor: " + request.after);
+                }
+                // The previous page ended among the rows without a value, last ascending and first descending
+                conditions.add(descending
+                        ? "(" + sortField.path() + " is not null or " + idField.path() + operator + idParam + ")"
+                        : "(" + sortField.path() + " is null and " + idField.path() + operator + idParam + ")");
+            } else {
+                int valueParam = idParam + 1;
+                values.add(parseCursorValue(sortField, cursor[0], request.after));
+                String keyset = sortField.path() + operator + valueParam + " or (" + sortField.path() +
+                        " = ?" + valueParam + " and " + idField.path() + operator + idParam + ")";
+                conditions.add(sortField.nullable() && !descending
+                        ? "(" + keyset + " or " + sortField.path() + " is null)"
+                        : "(" + keyset + ")");
+            }
+        }
+
+        String nulls = !sortField.nullable() ? "" : descending ? " nulls first" : " nulls last";
+        String orderBy = sortField == idField
+                ? idField.path() + direction
+                : sortField.path() + direction + nulls + ", " + idField.path() + direction;
+        String jpql = "select " + select + " from " + from + whereClause(conditions) + " order by " + orderBy;
+
+        // Streamed pages are read with a forward-only cursor, fetching STREAM_FETCH_SIZE rows per round-trip.
+        // The sort and cursor are checked by now, the query only runs in the transaction the response is written in.
+        if (request.isStreamed()) {
+            return new Page<>(() -> {
+                TypedQuery<T> query = create(entityManager, jpql, dtoClass, values);
+                if (request.limit != null) {
+                    query.setMaxResults(request.limit);
+                }
+                query.setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE);
+                return query.getResultStream();
+            });
+        }
+
+        TypedQuery<T> query = create(entityManager, jpql, dtoClass, values);
+
+        if (request.limit != null) {
+            query.setMaxResults(request.limit + 1);
+        }
+        cache(query);
+        List<T> items = query.getResultList();
+
+        String nextCursor = null;
+        if (request.limit != null && items.size() > request.limit) {
+            items = new ArrayList<>(items.subList(0, request.limit));
+            T last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(sort, sortField.valueOf(last), idField.valueOf(last));
+        }
+
+        Long total = null;
+        if (request.includeTotal) {
+            TypedQuery<Long> count = create(entityManager, "select count(*) from " + from +
+                    (where != null ? " where " + where : ""), Long.class, List.of(params));
+            total = cache(count).getSingleResult();
+        }
+
+        return new Page<>(items, nextCursor, total);
+    }
+
+    // Returns null if no row matches
+    public T single(EntityManager entityManager, String where, Object... params) {
+        // a result list instead of a stream, streams are scrolled and never served from the query cache
+        TypedQuery<T> query = create(entityManager, "select " + select + " from " + from + " where " + where, dtoClass, List.of(params));
+        List<T> items = cache(query).setMaxResults(1).getResultList();
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    private <R> TypedQuery<R> cache(TypedQuery<R> query) {
+        if (cacheable) {
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
+        }
+        return query;
+    }
+
+    private static <R> TypedQuery<R> create(EntityManager entityManager, String jpql, Class<R> resultClass, List<Object> params) {
+        TypedQuery<R> query = entityManager.createQuery(jpql, resultClass);
+        for (int i = 0; i < params.size(); i++) {
+            query.setParameter(i + 1, params.get(i));
+        }
+        return query;
+    }
+
+    private static Object parseCursorValue(SortField<?> field, String value, String cursor) {
+        try {
+            return field.parse(value);
+        } catch (RuntimeException e) {
+            throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static String whereClause(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+    }
+
+    // Cursor format (base64url): sort + "\n" + sort value + "\n" + id, or sort + "\n" + id if the sort value is null
+    private static String encodeCursor(String sort, Object value, Object id) {
+        String cursor = value == null ? sort + "\n" + id : sort + "\n" + value + "\n" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Returns {sort value, id}, the sort value is null if the cursor has none
+    private static String[] decodeCursor(String cursor, String sort) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+        }
+
+        int first = decoded.indexOf('\n');
+        int last = decoded.lastIndexOf('\n');
+        if (first < 0) {
+            throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+        }
+        if (!decoded.substring(0, first).equals(sort)) {
+            throw new InvalidPageRequestException("Cursor does not match sort order: " + sort);
+        }
+
+        String value = first == last ? null : decoded.substring(first + 1, last);
+        return new String[]{value, decoded.substring(last + 1)};
+    }
+}
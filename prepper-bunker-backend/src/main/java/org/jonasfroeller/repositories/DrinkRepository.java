@@ -2,28 +2,79 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.DrinkDTO;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.Drink;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class DrinkRepository implements PanacheRepository<Drink> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Drink", null, null, "e.type", "e.quantity");
+
+    private static final DTOQuery<DrinkDTO> DTO_QUERY = new DTOQuery<>(DrinkDTO.class,
+            "new org.jonasfroeller.dtos.DrinkDTO(d.id, d.type, d.quantity, d.expirationDate, l.id, l.name)",
+            "Drink d left join StorageLocation l on l.id = d.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("d.id", Long.class, dto -> dto.id),
+                    "type", SortField.ofString("d.type", dto -> dto.type),
+                    "quantity", new SortField<>("d.quantity", Double.class, dto -> dto.quantity),
+                    "expirationDate", SortField.ofNullable("d.expirationDate", LocalDate.class, dto -> dto.expirationDate)
+            ));
+
+    // Find all drinks as DTOs
+    public Page<DrinkDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find drink by ID as DTO
+    public DrinkDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "d.id = ?1", id);
+    }
+
     // Find drinks by location
-    public List<Drink> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<DrinkDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "d.storageLocation.id = ?1", storageLocationId);
     }
 
     // Find expired drinks
-    public List<Drink> findExpiredItems() {
-        return find("expirationDate < ?1", LocalDate.now()).list();
+    public Page<DrinkDTO> findExpiredItems(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "d.expirationDate < ?1", LocalDate.now());
     }
 
-    // Find drinks expiring soon (within the next month)
-    public List<Drink> findItemsExpiringSoon() {
+    // Find drinks expiring soon (today or within the next month)
+    public Page<DrinkDTO> findItemsExpiringSoon(PageRequest page) {
         LocalDate now = LocalDate.now();
         LocalDate oneMonthFromNow = now.plusMonths(1);
-        return find("expirationDate > ?1 and expirationDate < ?2",
-                now, oneMonthFromNow).list();
+        return DTO_QUERY.page(getEntityManager(), page, "d.expirationDate >= ?1 and d.expirationDate < ?2",
+                now, oneMonthFromNow);
+    }
+
+    // ID, storage location, type and expiration date of every drink that has an expiration date (for the expiry index)
+    public Stream<Object[]> streamExpirationDates() {
+        return getEntityManager()
+                .createQuery("select d.id, d.storageLocation.id, d.type, d.expirationDate from Drink d where d.expirationDate is not null", Object[].class)
+                .getResultStream();
+    }
+
+    // Get total quantities of drinks, grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
+    }
+
+    // Find several drinks by ID with one query, keyed by ID
+    public Map<Long, Drink> findByIds(Collection<Long> ids) {
+        return EntityLookup.byIds(this, Drink.class, ids);
+    }
+
+    // Add a signed delta to the quantity of a drink, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, double delta) {
+        return QuantityUpdate.add(getEntityManager(), "Drink", id, delta);
     }
-}
\ No newline at end of file
+}
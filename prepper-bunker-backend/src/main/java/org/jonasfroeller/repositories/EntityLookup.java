@@ -0,0 +1,52 @@
+package org.jonasfroeller.repositories;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.persistence.LockModeType;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Resolves a whole set of IDs with a single IN query instead of one findById per ID.
+// IDs already in the persistence context or the second-level cache are not queried at all.
+final class EntityLookup {
+
+    private EntityLookup() {
+    }
+
+    static <E extends PanacheEntity> Map<Long, E> byIds(PanacheRepository<E> repository, Class<E> entityClass, Collection<Long> ids) {
+        var distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return repository.getEntityManager().unwrap(Session.class)
+                .byMultipleIds(entityClass)
+                .enableSessionCheck(true)
+                .with(CacheMode.NORMAL)
+                .multiLoad(distinctIds).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toMap(entity -> entity.id, Function.identity()));
+    }
+
+    // Same with the rows locked for update, in ID order so concurrent lookups of overlapping sets do not deadlock.
+    // A query instead of a multi-load, which does not pass the lock on to its select
+    static <E extends PanacheEntity> Map<Long, E> lockByIds(PanacheRepository<E> repository, Class<E> entityClass, Collection<Long> ids) {
+        var distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return repository.getEntityManager()
+                .createQuery("from " + entityClass.getSimpleName() + " e where e.id in ?1 order by e.id", entityClass)
+                .setParameter(1, distinctIds)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultStream()
+                .collect(Collectors.toMap(entity -> entity.id, Function.identity()));
+    }
+}
@@ -2,28 +2,79 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.FoodDTO;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.Food;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class FoodRepository implements PanacheRepository<Food> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Food", null, null, "e.type", "e.quantity");
+
+    private static final DTOQuery<FoodDTO> DTO_QUERY = new DTOQuery<>(FoodDTO.class,
+            "new org.jonasfroeller.dtos.FoodDTO(f.id, f.type, f.quantity, f.expirationDate, l.id, l.name)",
+            "Food f left join StorageLocation l on l.id = f.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("f.id", Long.class, dto -> dto.id),
+                    "type", SortField.ofString("f.type", dto -> dto.type),
+                    "quantity", new SortField<>("f.quantity", Double.class, dto -> dto.quantity),
+                    "expirationDate", SortField.ofNullable("f.expirationDate", LocalDate.class, dto -> dto.expirationDate)
+            ));
+
+    // Find all food as DTOs
+    public Page<FoodDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find food by ID as DTO
+    public FoodDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "f.id = ?1", id);
+    }
+
     // Find food by location
-    public List<Food> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<FoodDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "f.storageLocation.id = ?1", storageLocationId);
     }
 
     // Find expired food
-    public List<Food> findExpiredItems() {
-        return find("expirationDate < ?1", LocalDate.now()).list();
+    public Page<FoodDTO> findExpiredItems(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "f.expirationDate < ?1", LocalDate.now());
     }
 
-    // Find food expiring soon (within the next month)
-    public List<Food> findItemsExpiringSoon() {
+    // Find food expiring soon (today or within the next month)
+    public Page<FoodDTO> findItemsExpiringSoon(PageRequest page) {
         LocalDate now = LocalDate.now();
         LocalDate oneMonthFromNow = now.plusMonths(1);
-        return find("expirationDate > ?1 and expirationDate < ?2",
-                now, oneMonthFromNow).list();
+        return DTO_QUERY.page(getEntityManager(), page, "f.expirationDate >= ?1 and f.expirationDate < ?2",
+                now, oneMonthFromNow);
+    }
+
+    // ID, storage location, type and expiration date of every food item that has an expiration date (for the expiry index)
+    public Stream<Object[]> streamExpirationDates() {
+        return getEntityManager()
+                .createQuery("select f.id, f.storageLocation.id, f.type, f.expirationDate from Food f where f.expirationDate is not null", Object[].class)
+                .getResultStream();
+    }
+
+    // Get total quantities of food, grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
+    }
+
+    // Find several food items by ID with one query, keyed by ID
+    public Map<Long, Food> findByIds(Collection<Long> ids) {
+        return EntityLookup.byIds(this, Food.class, ids);
+    }
+
+    // Add a signed delta to the quantity of a food item, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, double delta) {
+        return QuantityUpdate.add(getEntityManager(), "Food", id, delta);
     }
-}
\ No newline at end of file
+}
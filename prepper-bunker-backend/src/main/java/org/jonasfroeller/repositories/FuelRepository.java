@@ -2,27 +2,61 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+import org.jonasfroeller.dtos.FuelDTO;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.Fuel;
 
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class FuelRepository implements PanacheRepository<Fuel> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Fuel", "left join FuelType t on t.id = e.fuelType.id", "t.id", "t.name", "e.quantity");
+
+    private static final DTOQuery<FuelDTO> DTO_QUERY = new DTOQuery<>(FuelDTO.class,
+            "new org.jonasfroeller.dtos.FuelDTO(f.id, f.quantity, t.id, l.id, t.name, l.name)",
+            "Fuel f left join FuelType t on t.id = f.fuelType.id left join StorageLocation l on l.id = f.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("f.id", Long.class, dto -> dto.id),
+                    "quantity", new SortField<>("f.quantity", Double.class, dto -> dto.quantity)
+            ));
+
+    // Find all fuel as DTOs
+    public Page<FuelDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find fuel by ID as DTO
+    public FuelDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "f.id = ?1", id);
+    }
+
+    // Find fuel by ID, locked for update, with its fuel type loaded in the same select
+    public Fuel lockByIdWithFuelType(Long id) {
+        return getEntityManager().find(Fuel.class, id, LockModeType.PESSIMISTIC_WRITE,
+                Map.of("jakarta.persistence.fetchgraph", getEntityManager().getEntityGraph(Fuel.WITH_FUEL_TYPE)));
+    }
+
     // Find fuel by storage location
-    public List<Fuel> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<FuelDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "f.storageLocation.id = ?1", storageLocationId);
     }
 
     // Find fuel by type
-    public List<Fuel> findByFuelType(Long fuelTypeId) {
-        return find("fuelType.id", fuelTypeId).list();
+    public Page<FuelDTO> findByFuelType(Long fuelTypeId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "f.fuelType.id = ?1", fuelTypeId);
+    }
+
+    // Get total quantities of fuel, grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
     }
 
-    // Get total quantity of a specific fuel type
-    public double getTotalQuantityByType(Long fuelTypeId) {
-        return find("fuelType.id", fuelTypeId)
-                .stream()
-                .mapToDouble(fuel -> fuel.quantity)
-                .sum();
+    // Add a signed delta to the quantity of a fuel record, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, double delta) {
+        return QuantityUpdate.add(getEntityManager(), "Fuel", id, delta);
     }
-}
\ No newline at end of file
+}
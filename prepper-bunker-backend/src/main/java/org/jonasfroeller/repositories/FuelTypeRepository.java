@@ -2,9 +2,38 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.FuelTypeDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.FuelType;
 
+import java.util.Collection;
+import java.util.Map;
+
 @ApplicationScoped
 public class FuelTypeRepository implements PanacheRepository<FuelType> {
     // Basic CRUD operations are inherited from PanacheRepository
-}
\ No newline at end of file
+
+    private static final DTOQuery<FuelTypeDTO> DTO_QUERY = new DTOQuery<>(FuelTypeDTO.class,
+            "new org.jonasfroeller.dtos.FuelTypeDTO(t.id, t.name)",
+            "FuelType t",
+            Map.of(
+                    "id", new SortField<>("t.id", Long.class, dto -> dto.id),
+                    "name", SortField.ofString("t.name", dto -> dto.name)
+            )).cached();
+
+    // Find all fuel types as DTOs
+    public Page<FuelTypeDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find fuel type by ID as DTO
+    public FuelTypeDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "t.id = ?1", id);
+    }
+
+    // Find several fuel types by ID with one query, keyed by ID
+    public Map<Long, FuelType> findByIds(Collection<Long> ids) {
+        return EntityLookup.byIds(this, FuelType.class, ids);
+    }
+}
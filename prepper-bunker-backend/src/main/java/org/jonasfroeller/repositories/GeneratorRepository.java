@@ -2,24 +2,56 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.GeneratorDTO;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.Generator;
 
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class GeneratorRepository implements PanacheRepository<Generator> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Generator", null, null, "e.type", null);
+
+    private static final DTOQuery<GeneratorDTO> DTO_QUERY = new DTOQuery<>(GeneratorDTO.class,
+            "new org.jonasfroeller.dtos.GeneratorDTO(g.id, g.type, g.power, g.status, t.id, l.id, t.name, l.name)",
+            "Generator g left join FuelType t on t.id = g.fuelType.id left join StorageLocation l on l.id = g.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("g.id", Long.class, dto -> dto.id),
+                    "type", SortField.ofString("g.type", dto -> dto.type),
+                    "power", new SortField<>("g.power", Double.class, dto -> dto.power),
+                    "status", SortField.ofString("g.status", dto -> dto.status)
+            ));
+
+    // Find all generators as DTOs
+    public Page<GeneratorDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find generator by ID as DTO
+    public GeneratorDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "g.id = ?1", id);
+    }
+
     // Find generators by storage location
-    public List<Generator> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<GeneratorDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "g.storageLocation.id = ?1", storageLocationId);
     }
 
     // Find generators by fuel type
-    public List<Generator> findByFuelType(Long fuelTypeId) {
-        return find("fuelType.id", fuelTypeId).list();
+    public Page<GeneratorDTO> findByFuelType(Long fuelTypeId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "g.fuelType.id = ?1", fuelTypeId);
     }
 
     // Find generators by status
-    public List<Generator> findByStatus(String status) {
-        return find("status", status).list();
+    public Page<GeneratorDTO> findByStatus(String status, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "g.status = ?1", status);
+    }
+
+    // Get generator counts (they have no quantity), grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
     }
-}
\ No newline at end of file
+}
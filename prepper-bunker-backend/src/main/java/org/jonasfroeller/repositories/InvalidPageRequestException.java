@@ -0,0 +1,7 @@
+package org.jonasfroeller.repositories;
+
+public class InvalidPageRequestException extends RuntimeException {
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package org.jonasfroeller.repositories;
+
+// Total quantity and number of items of a group of inventory items
+public class InventoryCount {
+    public static final InventoryCount ZERO = new InventoryCount(0, 0);
+
+    private final double quantity;
+    private final long itemCount;
+
+    public InventoryCount(double quantity, long itemCount) {
+        this.quantity = quantity;
+        this.itemCount = itemCount;
+    }
+
+    public double quantity() {
+        return quantity;
+    }
+
+    public long itemCount() {
+        return itemCount;
+    }
+
+    public boolean matches(InventoryCount other) {
+        return itemCount == other.itemCount && Math.abs(quantity - other.quantity) < 1e-6;
+    }
+}
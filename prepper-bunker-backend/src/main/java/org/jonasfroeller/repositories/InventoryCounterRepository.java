@@ -0,0 +1,95 @@
+package org.jonasfroeller.repositories;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.LockModeType;
+import org.jonasfroeller.models.InventoryCounter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@ApplicationScoped
+public class InventoryCounterRepository implements PanacheRepositoryBase<InventoryCounter, InventoryCounter.Key> {
+
+    // Counted resource types: the entity and how its type key is derived, matching V3__inventory_counters.sql
+    private static final Map<String, String> TYPE_KEYS = Map.of(
+            "AmmunitionStock", "coalesce(cast(e.ammunitionType.id as String), '')",
+            "Fuel", "coalesce(cast(e.fuelType.id as String), '')",
+            "Battery", "coalesce(e.type, '')"
+    );
+    private static final String LOCATION_KEY = "coalesce(e.storageLocation.id, 0)";
+
+    public static Set<String> resourceTypes() {
+        return TYPE_KEYS.keySet();
+    }
+
+    // Adds to the counter, creating it if it does not exist yet. Concurrent writers of the same
+    // counter are serialized by the row lock of the upsert until their transactions end.
+    public void add(InventoryCounter.Key key, double quantity, long itemCount) {
+        getEntityManager().createQuery("insert into InventoryCounter (resourceType, typeKey, storageLocationId, totalQuantity, itemCount) " +
+                        "values (?1, ?2, ?3, ?4, ?5) on conflict (resourceType, typeKey, storageLocationId) do update " +
+                        "set totalQuantity = totalQuantity + excluded.totalQuantity, itemCount = itemCount + excluded.itemCount")
+                .setParameter(1, key.resourceType)
+                .setParameter(2, key.typeKey)
+                .setParameter(3, key.storageLocationId)
+                .setParameter(4, quantity)
+                .setParameter(5, itemCount)
+                .executeUpdate();
+    }
+
+    // Sum of the counters of a type over all storage locations
+    public InventoryCount sumByType(String resourceType, String typeKey) {
+        Object[] row = getEntityManager().createQuery("select coalesce(sum(c.totalQuantity), 0), coalesce(sum(c.itemCount), 0) " +
+                        "from InventoryCounter c where c.resourceType = ?1 and c.typeKey = ?2", Object[].class)
+                .setParameter(1, resourceType)
+                .setParameter(2, typeKey)
+                .getSingleResult();
+        return new InventoryCount(((Number) row[0]).doubleValue(), ((Number) row[1]).longValue());
+    }
+
+    // Returns the counter locked for update, creating it with zero totals if it does not exist yet
+    public InventoryCounter lockOrCreate(InventoryCounter.Key key) {
+        add(key, 0, 0);
+        return findById(key, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    // Replaces all counters with the ones aggregated from the item tables. Changes written concurrently can be lost,
+    // so this is only for item tables that were written behind the counters' back while nothing else writes
+    public void rebuild() {
+        deleteAll();
+        TYPE_KEYS.forEach((resourceType, typeKey) -> getEntityManager()
+                .createQuery("insert into InventoryCounter (resourceType, typeKey, storageLocationId, totalQuantity, itemCount) " +
+                        "select '" + resourceType + "', " + typeKey + ", " + LOCATION_KEY + ", coalesce(sum(e.quantity), 0), count(e) " +
+                        "from " + resourceType + " e group by " + typeKey + ", " + LOCATION_KEY)
+                .executeUpdate());
+    }
+
+    // The counters as they should be, aggregated from the item table of the resource type
+    public Map<InventoryCounter.Key, InventoryCount> countItems(String resourceType) {
+        String typeKey = TYPE_KEYS.get(resourceType);
+        List<Object[]> rows = getEntityManager().createQuery("select " + typeKey + ", " + LOCATION_KEY + ", " +
+                        "coalesce(sum(e.quantity), 0), count(e) from " + resourceType + " e " +
+                        "group by " + typeKey + ", " + LOCATION_KEY, Object[].class)
+                .getResultList();
+
+        Map<InventoryCounter.Key, InventoryCount> counts = new HashMap<>();
+        for (Object[] row : rows) {
+            counts.put(new InventoryCounter.Key(resourceType, (String) row[0], ((Number) row[1]).longValue()),
+                    new InventoryCount(((Number) row[2]).doubleValue(), ((Number) row[3]).longValue()));
+        }
+        return counts;
+    }
+
+    // The counter as it should be, aggregated from the item table
+    public InventoryCount countItems(InventoryCounter.Key key) {
+        Object[] row = getEntityManager().createQuery("select coalesce(sum(e.quantity), 0), count(e) from " +
+                        key.resourceType + " e where " + TYPE_KEYS.get(key.resourceType) + " = ?1 and " + LOCATION_KEY + " = ?2",
+                        Object[].class)
+                .setParameter(1, key.typeKey)
+                .setParameter(2, key.storageLocationId)
+                .getSingleResult();
+        return new InventoryCount(((Number) row[0]).doubleValue(), ((Number) row[1]).longValue());
+    }
+}
@@ -0,0 +1,75 @@
+package org.jonasfroeller.repositories;
+
+import jakarta.persistence.EntityManager;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Grouped SUM/COUNT query for the inventory totals of one resource type, aggregated by the database.
+// Aliases: e = the entity, t = its type entity (if any), l = its storage location.
+public class InventoryTotalsQuery {
+    private final String resourceType;
+    private final String typeJoin;
+    private final String typeIdPath;
+    private final String typeNamePath;
+    private final String quantityPath;
+
+    // typeJoin/typeIdPath are null for resources whose type is a plain column,
+    // quantityPath is null for resources without a quantity (items are counted instead)
+    public InventoryTotalsQuery(String resourceType, String typeJoin, String typeIdPath,
+                                String typeNamePath, String quantityPath) {
+        this.resourceType = resourceType;
+        this.typeJoin = typeJoin;
+        this.typeIdPath = typeIdPath;
+        this.typeNamePath = typeNamePath;
+        this.quantityPath = quantityPath;
+    }
+
+    public List<InventoryTotalDTO> list(EntityManager entityManager, boolean groupByType, boolean groupByLocation) {
+        List<String> groupColumns = new ArrayList<>();
+        if (groupByType) {
+            if (typeIdPath != null) groupColumns.add(typeIdPath);
+            groupColumns.add(typeNamePath);
+        }
+        if (groupByLocation) {
+            groupColumns.add("l.id");
+            groupColumns.add("l.name");
+        }
+
+        StringBuilder jpql = new StringBuilder("select ");
+        for (String column : groupColumns) {
+            jpql.append(column).append(", ");
+        }
+        jpql.append(quantityPath != null ? "coalesce(sum(" + quantityPath + "), 0)" : "count(e)")
+                .append(", count(e) from ").append(resourceType).append(" e");
+        if (groupByType && typeJoin != null) jpql.append(' ').append(typeJoin);
+        if (groupByLocation) jpql.append(" left join e.storageLocation l");
+        if (!groupColumns.isEmpty()) {
+            String columns = String.join(", ", groupColumns);
+            jpql.append(" group by ").append(columns).append(" order by ").append(columns);
+        }
+
+        List<Object[]> rows = entityManager.createQuery(jpql.toString(), Object[].class).getResultList();
+
+        List<InventoryTotalDTO> totals = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            int column = 0;
+            InventoryTotalDTO total = new InventoryTotalDTO();
+            total.resourceType = resourceType;
+            if (groupByType) {
+                if (typeIdPath != null) total.typeId = (Long) row[column++];
+                total.typeName = (String) row[column++];
+            }
+            if (groupByLocation) {
+                total.storageLocationId = (Long) row[column++];
+                total.storageLocationName = (String) row[column++];
+            }
+            total.totalQuantity = ((Number) row[column++]).doubleValue();
+            total.itemCount = ((Number) row[column]).longValue();
+            totals.add(total);
+        }
+
+        return totals;
+    }
+}
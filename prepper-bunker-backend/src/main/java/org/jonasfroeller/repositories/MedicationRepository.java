@@ -2,33 +2,79 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.MedicationDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.models.Medication;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class MedicationRepository implements PanacheRepository<Medication> {
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Medication", null, null, "e.name", "e.quantity");
+
+    private static final DTOQuery<MedicationDTO> DTO_QUERY = new DTOQuery<>(MedicationDTO.class,
+            "new org.jonasfroeller.dtos.MedicationDTO(m.id, m.name, m.quantity, m.expirationDate, m.purpose, l.id, l.name)",
+            "Medication m left join StorageLocation l on l.id = m.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("m.id", Long.class, dto -> dto.id),
+                    "name", SortField.ofString("m.name", dto -> dto.name),
+                    "quantity", new SortField<>("m.quantity", Integer.class, dto -> dto.quantity),
+                    "expirationDate", SortField.ofNullable("m.expirationDate", LocalDate.class, dto -> dto.expirationDate),
+                    "purpose", SortField.ofString("m.purpose", dto -> dto.purpose)
+            ));
+
+    // Find all medications as DTOs
+    public Page<MedicationDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find medication by ID as DTO
+    public MedicationDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "m.id = ?1", id);
+    }
+
     // Find medications by location
-    public List<Medication> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    public Page<MedicationDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "m.storageLocation.id = ?1", storageLocationId);
     }
 
     // Find expired medications
-    public List<Medication> findExpiredItems() {
-        return find("expirationDate < ?1", LocalDate.now()).list();
+    public Page<MedicationDTO> findExpiredItems(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "m.expirationDate < ?1", LocalDate.now());
     }
 
     // Find medications by purpose
-    public List<Medication> findByPurpose(String purpose) {
-        return find("purpose", purpose).list();
+    public Page<MedicationDTO> findByPurpose(String purpose, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "m.purpose = ?1", purpose);
     }
 
-    // Find medications expiring soon (within the next month)
-    public List<Medication> findItemsExpiringSoon() {
+    // Find medications expiring soon (today or within the next month)
+    public Page<MedicationDTO> findItemsExpiringSoon(PageRequest page) {
         LocalDate now = LocalDate.now();
         LocalDate oneMonthFromNow = now.plusMonths(1);
-        return find("expirationDate > ?1 and expirationDate < ?2",
-                now, oneMonthFromNow).list();
+        return DTO_QUERY.page(getEntityManager(), page, "m.expirationDate >= ?1 and m.expirationDate < ?2",
+                now, oneMonthFromNow);
+    }
+
+    // ID, storage location, name and expiration date of every medication that has an expiration date (for the expiry index)
+    public Stream<Object[]> streamExpirationDates() {
+        return getEntityManager()
+                .createQuery("select m.id, m.storageLocation.id, m.name, m.expirationDate from Medication m where m.expirationDate is not null", Object[].class)
+                .getResultStream();
+    }
+
+    // Get total quantities of medications, grouped by name and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
+    }
+
+    // Add a signed delta to the quantity of a medication, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, int delta) {
+        return QuantityUpdate.add(getEntityManager(), "Medication", id, delta);
     }
-}
\ No newline at end of file
+}
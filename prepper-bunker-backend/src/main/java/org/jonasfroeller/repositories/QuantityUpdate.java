@@ -0,0 +1,31 @@
+package org.jonasfroeller.repositories;
+
+import jakarta.persistence.EntityManager;
+
+// Adds a signed delta to an item's quantity in the database itself, so concurrent consumers never overwrite
+// each other's changes. The update is skipped when it would leave the quantity below zero (or above the column's range).
+final class QuantityUpdate {
+
+    private QuantityUpdate() {
+    }
+
+    static boolean add(EntityManager entityManager, String entityName, Long id, Number delta) {
+        return entityManager.createQuery("update " + entityName + " e set e.quantity = e.quantity + :delta " +
+                        "where e.id = :id and e.quantity + :delta >= 0")
+                .setParameter("delta", delta)
+                .setParameter("id", id)
+                .executeUpdate() == 1;
+    }
+
+    // Whole-number quantities are int columns. The new quantity is checked as a bigint, so a delta that would overflow
+    // the column skips the update like one that would drop below zero, instead of failing the statement.
+    static boolean add(EntityManager entityManager, String entityName, Long id, int delta) {
+        return entityManager.createQuery("update " + entityName + " e set e.quantity = e.quantity + :delta " +
+                        "where e.id = :id and cast(e.quantity as Long) + :wideDelta between 0 and :max")
+                .setParameter("delta", delta)
+                .setParameter("wideDelta", (long) delta)
+                .setParameter("max", (long) Integer.MAX_VALUE)
+                .setParameter("id", id)
+                .executeUpdate() == 1;
+    }
+}
@@ -0,0 +1,56 @@
+package org.jonasfroeller.repositories;
+
+import java.time.LocalDate;
+import java.util.function.Function;
+
+// A whitelisted sort field of a DTOQuery: the JPQL expression to sort by and how to read
+// its value back from a DTO, so the value can be put into the cursor of the next page.
+public class SortField<T> {
+    private final String path;
+    private final Class<?> type;
+    private final Function<T, Object> valueOf;
+    private final boolean nullable;
+
+    public SortField(String path, Class<?> type, Function<T, Object> valueOf) {
+        this(path, type, valueOf, false);
+    }
+
+    private SortField(String path, Class<?> type, Function<T, Object> valueOf, boolean nullable) {
+        this.path = path;
+        this.type = type;
+        this.valueOf = valueOf;
+        this.nullable = nullable;
+    }
+
+    // Nullable columns of other types: rows without a value come after all others ascending, before them descending
+    public static <T> SortField<T> ofNullable(String path, Class<?> type, Function<T, Object> valueOf) {
+        return new SortField<>(path, type, valueOf, true);
+    }
+
+    // Nullable string columns are sorted as empty strings, keyset comparisons would skip null rows
+    public static <T> SortField<T> ofString(String path, Function<T, String> valueOf) {
+        return new SortField<>("coalesce(" + path + ", '')", String.class,
+                dto -> valueOf.apply(dto) == null ? "" : valueOf.apply(dto));
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public boolean nullable() {
+        return nullable;
+    }
+
+    public Object valueOf(T dto) {
+        return valueOf.apply(dto);
+    }
+
+    public Object parse(String value) {
+        if (type == String.class) return value;
+        if (type == Long.class) return Long.valueOf(value);
+        if (type == Integer.class) return Integer.valueOf(value);
+        if (type == Double.class) return Double.valueOf(value);
+        if (type == LocalDate.class) return LocalDate.parse(value);
+        throw new IllegalStateException("Unsupported sort field type: " + type.getName());
+    }
+}
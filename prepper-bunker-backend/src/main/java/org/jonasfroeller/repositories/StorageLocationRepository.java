@@ -2,9 +2,38 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.StorageLocationDTO;
 import org.jonasfroeller.models.StorageLocation;
 
+import java.util.Collection;
+import java.util.Map;
+
 @ApplicationScoped
 public class StorageLocationRepository implements PanacheRepository<StorageLocation> {
     // Basic CRUD operations are inherited from PanacheRepository
-}
\ No newline at end of file
+
+    private static final DTOQuery<StorageLocationDTO> DTO_QUERY = new DTOQuery<>(StorageLocationDTO.class,
+            "new org.jonasfroeller.dtos.StorageLocationDTO(l.id, l.name, l.description)",
+            "StorageLocation l",
+            Map.of(
+                    "id", new SortField<>("l.id", Long.class, dto -> dto.id),
+                    "name", SortField.ofString("l.name", dto -> dto.name)
+            )).cached();
+
+    // Find all storage locations as DTOs
+    public Page<StorageLocationDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    // Find storage location by ID as DTO
+    public StorageLocationDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "l.id = ?1", id);
+    }
+
+    // Find several storage locations by ID with one query, keyed by ID
+    public Map<Long, StorageLocation> findByIds(Collection<Long> ids) {
+        return EntityLookup.byIds(this, StorageLocation.class, ids);
+    }
+}
@@ -2,17 +2,55 @@ package org.jonasfroeller.repositories;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.WeaponDTO;
 import org.jonasfroeller.models.Weapon;
 
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class WeaponRepository implements PanacheRepository<Weapon> {
-    public List<Weapon> findByStorageLocation(Long storageLocationId) {
-        return find("storageLocation.id", storageLocationId).list();
+    private static final InventoryTotalsQuery INVENTORY_TOTALS = new InventoryTotalsQuery("Weapon", null, null, "e.type", "e.quantity");
+
+    private static final DTOQuery<WeaponDTO> DTO_QUERY = new DTOQuery<>(WeaponDTO.class,
+            "new org.jonasfroeller.dtos.WeaponDTO(w.id, w.type, w.model, w.quantity, a.id, l.id, " +
+                    "concat(a.caliber, ' ', a.type), l.name)",
+            "Weapon w left join AmmunitionType a on a.id = w.ammunitionType.id left join StorageLocation l on l.id = w.storageLocation.id",
+            Map.of(
+                    "id", new SortField<>("w.id", Long.class, dto -> dto.id),
+                    "type", SortField.ofString("w.type", dto -> dto.type),
+                    "model", SortField.ofString("w.model", dto -> dto.model),
+                    "quantity", new SortField<>("w.quantity", Integer.class, dto -> dto.quantity)
+            ));
+
+    public Page<WeaponDTO> listAllDTOs(PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page);
+    }
+
+    public WeaponDTO findDTOById(Long id) {
+        return DTO_QUERY.single(getEntityManager(), "w.id = ?1", id);
+    }
+
+    public Page<WeaponDTO> findByStorageLocation(Long storageLocationId, PageRequest page) {
+        return DTO_QUERY.page(getEntityManager(), page, "w.storageLocation.id = ?1", storageLocationId);
     }
 
     public long totalQuantity() {
-        return findAll().stream().mapToLong(weapon -> weapon.quantity).sum();
+        return getEntityManager()
+                .createQuery("select coalesce(sum(w.quantity), 0) from Weapon w", Long.class)
+                .getSingleResult();
+    }
+
+    // Get total quantities of weapons, grouped by type and/or storage location
+    public List<InventoryTotalDTO> getInventoryTotals(boolean groupByType, boolean groupByLocation) {
+        return INVENTORY_TOTALS.list(getEntityManager(), groupByType, groupByLocation);
+    }
+
+    // Add a signed delta to the quantity of a weapon, false if it does not exist or the quantity would drop below zero
+    public boolean adjustQuantity(Long id, int delta) {
+        return QuantityUpdate.add(getEntityManager(), "Weapon", id, delta);
     }
 }
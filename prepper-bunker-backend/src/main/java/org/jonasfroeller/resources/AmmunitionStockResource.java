@@ -1,29 +1,43 @@
 package org.jonasfroeller.resources;
 
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.AmmunitionStockBatchUpdateDTO;
 import org.jonasfroeller.dtos.AmmunitionStockCreateDTO;
 import org.jonasfroeller.dtos.AmmunitionStockDTO;
 import org.jonasfroeller.dtos.AmmunitionSummaryDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.AmmunitionStock;
 import org.jonasfroeller.models.AmmunitionType;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.AmmunitionStockRepository;
 import org.jonasfroeller.repositories.AmmunitionTypeRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.services.InventoryCounterService;
 import org.jonasfroeller.services.NotificationService;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.jonasfroeller.services.InventoryCounterService.counted;
 
 @Path("/ammunition-stocks")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class AmmunitionStockResource {
 
@@ -36,45 +50,58 @@ public class AmmunitionStockResource {
     @Inject
     StorageLocationRepository storageLocationRepository;
 
+    @Inject
+    InventoryCounterService inventoryCounters;
+
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
+    @Inject
+    Batches batches;
+
     @GET
+    @ETagged({"AmmunitionStock", "AmmunitionType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all ammunition stocks")
     @APIResponse(responseCode = "200", description = "List of all ammunition stocks")
-    public List<AmmunitionStockDTO> getAllAmmunitionStocks() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllAmmunitionStocks(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"AmmunitionStock", "AmmunitionType", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get ammunition stock by ID")
     @APIResponse(responseCode = "200", description = "The ammunition stock with the given ID")
     @APIResponse(responseCode = "404", description = "Ammunition stock not found")
     public Response getAmmunitionStockById(@PathParam("id") Long id) {
-        AmmunitionStock stock = repository.findById(id);
+        AmmunitionStockDTO stock = repository.findDTOById(id);
         if (stock == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Ammunition stock not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(stock)).build();
+        return Response.ok(stock).build();
     }
 
     @GET
+    @ETagged({"AmmunitionStock", "AmmunitionType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get ammunition stocks by storage location")
     @APIResponse(responseCode = "200", description = "List of ammunition stocks at the specified location")
-    public List<AmmunitionStockDTO> getAmmunitionStocksByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAmmunitionStocksByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @ETagged({"AmmunitionStock", "AmmunitionType", "StorageLocation"})
     @Path("/total/{typeId}")
     @Operation(summary = "Get total quantity of an ammunition type across all stocks")
     @APIResponse(responseCode = "200", description = "Total quantity of the specified ammunition type")
@@ -87,7 +114,7 @@ public class AmmunitionStockResource {
                     .build();
         }
 
-        int totalQuantity = repository.getTotalQuantityByType(typeId);
+        int totalQuantity = (int) inventoryCounters.total(InventoryCounterService.AMMUNITION_STOCK, String.valueOf(typeId)).quantity();
 
         AmmunitionSummaryDTO summary = new AmmunitionSummaryDTO(
                 type.id,
@@ -125,12 +152,14 @@ public class AmmunitionStockResource {
         stock.storageLocation = storageLocation;
 
         repository.persist(stock);
+        inventoryCounters.created(counted(stock));
 
-        notificationService.notifyResourceCreated("AmmunitionStock", stock.id,
-                ammunitionType.caliber + " " + ammunitionType.type + " (Qty: " + stock.quantity + ")");
+        AmmunitionStockDTO created = mapToDTO(stock);
+        notificationService.notifyResourceCreated("AmmunitionStock", stock.id, stock.storageLocation.id,
+                ammunitionType.caliber + " " + ammunitionType.type + " (Qty: " + stock.quantity + ")", created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(stock))
+                .entity(created)
                 .build();
     }
 
@@ -142,7 +171,7 @@ public class AmmunitionStockResource {
     @APIResponse(responseCode = "404", description = "Ammunition stock not found")
     @APIResponse(responseCode = "400", description = "Invalid input data")
     public Response updateAmmunitionStock(@PathParam("id") Long id, @Valid AmmunitionStockCreateDTO stockDTO) {
-        AmmunitionStock stock = repository.findById(id);
+        AmmunitionStock stock = repository.findById(id, LockModeType.PESSIMISTIC_WRITE);
         if (stock == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Ammunition stock not found with ID: " + id))
@@ -163,16 +192,182 @@ public class AmmunitionStockResource {
                     .build();
         }
 
+        InventoryCounterService.Item before = counted(stock);
         stock.quantity = stockDTO.quantity;
         stock.ammunitionType = ammunitionType;
         stock.storageLocation = storageLocation;
 
         repository.persist(stock);
+        inventoryCounters.updated(before, counted(stock));
+
+        AmmunitionStockDTO updated = mapToDTO(stock);
+        notificationService.notifyResourceUpdated("AmmunitionStock", stock.id, stock.storageLocation.id,
+                ammunitionType.caliber + " " + ammunitionType.type + " (Qty: " + stock.quantity + ")", updated);
+
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/batch")
+    @Transactional
+    @Operation(summary = "Create several ammunition stocks at once")
+    @APIResponse(responseCode = "201", description = "All ammunition stocks created")
+    @APIResponse(responseCode = "200", description = "Some ammunition stocks created, the rest are listed as errors")
+    @APIResponse(responseCode = "400", description = "Atomic batch with invalid items, nothing created")
+    public Response createAmmunitionStockBatch(@NotNull @Size(max = Batches.MAX_SIZE) List<AmmunitionStockCreateDTO> stockDTOs,
+                                               @QueryParam("atomic") boolean atomic) {
+        Map<Integer, String> errors = batches.validate(stockDTOs);
+        Map<Long, AmmunitionType> ammunitionTypes = ammunitionTypeRepository.findByIds(
+                stockDTOs.stream().filter(Objects::nonNull).map(dto -> dto.ammunitionTypeId).toList());
+        Map<Long, StorageLocation> storageLocations = storageLocationRepository.findByIds(
+                stockDTOs.stream().filter(Objects::nonNull).map(dto -> dto.storageLocationId).toList());
+
+        for (int i = 0; i < stockDTOs.size(); i++) {
+            AmmunitionStockCreateDTO stockDTO = stockDTOs.get(i);
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            if (!ammunitionTypes.containsKey(stockDTO.ammunitionTypeId)) {
+                errors.put(i, "Ammunition type not found with ID: " + stockDTO.ammunitionTypeId);
+            } else if (!storageLocations.containsKey(stockDTO.storageLocationId)) {
+                errors.put(i, "Storage location not found with ID: " + stockDTO.storageLocationId);
+            }
+        }
+
+        if (atomic && !errors.isEmpty()) {
+            return batches.rejected(errors);
+        }
+
+        List<AmmunitionStockDTO> created = new ArrayList<>();
+        InventoryCounterService.Changes counterChanges = new InventoryCounterService.Changes();
+        for (int i = 0; i < stockDTOs.size(); i++) {
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            AmmunitionStockCreateDTO stockDTO = stockDTOs.get(i);
+            AmmunitionStock stock = new AmmunitionStock();
+            stock.quantity = stockDTO.quantity;
+            stock.ammunitionType = ammunitionTypes.get(stockDTO.ammunitionTypeId);
+            stock.storageLocation = storageLocations.get(stockDTO.storageLocationId);
+
+            repository.persist(stock);
+            counterChanges.created(counted(stock));
+            created.add(mapToDTO(stock));
+        }
+        inventoryCounters.apply(counterChanges);
+
+        if (!created.isEmpty()) {
+            notificationService.notifyResourcesCreated("AmmunitionStock", created);
+        }
+
+        return batches.result(created, errors, Response.Status.CREATED);
+    }
+
+    @PUT
+    @Path("/batch")
+    @Transactional
+    @Operation(summary = "Update several ammunition stocks at once")
+    @APIResponse(responseCode = "200", description = "Ammunition stocks updated, rejected items are listed as errors")
+    @APIResponse(responseCode = "400", description = "Atomic batch with invalid items, nothing updated")
+    public Response updateAmmunitionStockBatch(@NotNull @Size(max = Batches.MAX_SIZE) List<AmmunitionStockBatchUpdateDTO> stockDTOs,
+                                               @QueryParam("atomic") boolean atomic) {
+        Map<Integer, String> errors = batches.validate(stockDTOs);
+        Map<Long, AmmunitionStock> stocks = repository.lockByIds(
+                stockDTOs.stream().filter(Objects::nonNull).map(dto -> dto.id).toList());
+        Map<Long, AmmunitionType> ammunitionTypes = ammunitionTypeRepository.findByIds(
+                stockDTOs.stream().filter(Objects::nonNull).map(dto -> dto.ammunitionTypeId).toList());
+        Map<Long, StorageLocation> storageLocations = storageLocationRepository.findByIds(
+                stockDTOs.stream().filter(Objects::nonNull).map(dto -> dto.storageLocationId).toList());
+
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < stockDTOs.size(); i++) {
+            AmmunitionStockBatchUpdateDTO stockDTO = stockDTOs.get(i);
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            if (!stocks.containsKey(stockDTO.id)) {
+                errors.put(i, "Ammunition stock not found with ID: " + stockDTO.id);
+            } else if (!seenIds.add(stockDTO.id)) {
+                errors.put(i, "Ammunition stock with ID " + stockDTO.id + " appears more than once");
+            } else if (!ammunitionTypes.containsKey(stockDTO.ammunitionTypeId)) {
+                errors.put(i, "Ammunition type not found with ID: " + stockDTO.ammunitionTypeId);
+            } else if (!storageLocations.containsKey(stockDTO.storageLocationId)) {
+                errors.put(i, "Storage location not found with ID: " + stockDTO.storageLocationId);
+            }
+        }
+
+        if (atomic && !errors.isEmpty()) {
+            return batches.rejected(errors);
+        }
+
+        List<AmmunitionStockDTO> updated = new ArrayList<>();
+        InventoryCounterService.Changes counterChanges = new InventoryCounterService.Changes();
+        for (int i = 0; i < stockDTOs.size(); i++) {
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            AmmunitionStockBatchUpdateDTO stockDTO = stockDTOs.get(i);
+            AmmunitionStock stock = stocks.get(stockDTO.id);
+            InventoryCounterService.Item before = counted(stock);
+            stock.quantity = stockDTO.quantity;
+            stock.ammunitionType = ammunitionTypes.get(stockDTO.ammunitionTypeId);
+            stock.storageLocation = storageLocations.get(stockDTO.storageLocationId);
+
+            counterChanges.updated(before, counted(stock));
+            updated.add(mapToDTO(stock));
+        }
+        inventoryCounters.apply(counterChanges);
+
+        if (!updated.isEmpty()) {
+            notificationService.notifyResourcesUpdated("AmmunitionStock", updated);
+        }
+
+        return batches.result(updated, errors, Response.Status.OK);
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock an ammunition stock", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta, or the quantity would exceed 2147483647")
+    @APIResponse(responseCode = "404", description = "Ammunition stock not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustAmmunitionStock(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        if (adjustment.delta % 1 != 0 || Math.abs(adjustment.delta) > Integer.MAX_VALUE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Delta must be a whole number, got: " + adjustment.delta))
+                    .build();
+        }
+
+        int delta = adjustment.delta.intValue();
+        if (!repository.adjustQuantity(id, delta)) {
+            AmmunitionStockDTO stock = repository.findDTOById(id);
+            if (stock == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Ammunition stock not found with ID: " + id))
+                        .build();
+            }
+            if ((long) stock.quantity + delta > Integer.MAX_VALUE) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ErrorResponse("Quantity would exceed " + Integer.MAX_VALUE + ", quantity is " + stock.quantity + " but delta is " + delta))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + stock.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        AmmunitionStockDTO stock = repository.findDTOById(id);
+        inventoryCounters.adjusted(counted(stock), delta);
 
-        notificationService.notifyResourceUpdated("AmmunitionStock", stock.id,
-                ammunitionType.caliber + " " + ammunitionType.type + " (Qty: " + stock.quantity + ")");
+        notificationService.notifyResourceUpdated("AmmunitionStock", id, stock.storageLocationId, stock.ammunitionTypeName + " (Qty: " + stock.quantity + ")", stock);
 
-        return Response.ok(mapToDTO(stock)).build();
+        return Response.ok(stock).build();
     }
 
     @DELETE
@@ -182,7 +377,7 @@ public class AmmunitionStockResource {
     @APIResponse(responseCode = "204", description = "Ammunition stock deleted")
     @APIResponse(responseCode = "404", description = "Ammunition stock not found")
     public Response deleteAmmunitionStock(@PathParam("id") Long id) {
-        AmmunitionStock stock = repository.findById(id);
+        AmmunitionStock stock = repository.lockByIdWithAmmunitionType(id);
         if (stock == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Ammunition stock not found with ID: " + id))
@@ -190,10 +385,12 @@ public class AmmunitionStockResource {
         }
 
         String stockName = stock.ammunitionType.caliber + " " + stock.ammunitionType.type + " (Qty: " + stock.quantity + ")";
+        Long storageLocationId = stock.storageLocation == null ? null : stock.storageLocation.id;
 
         repository.delete(stock);
+        inventoryCounters.deleted(counted(stock));
 
-        notificationService.notifyResourceDeleted("AmmunitionStock", id, stockName);
+        notificationService.notifyResourceDeleted("AmmunitionStock", id, storageLocationId, stockName);
 
         return Response.noContent().build();
     }
@@ -9,17 +9,16 @@ import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jonasfroeller.dtos.AmmunitionTypeDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.AmmunitionType;
 import org.jonasfroeller.repositories.AmmunitionStockRepository;
 import org.jonasfroeller.repositories.AmmunitionTypeRepository;
 import org.jonasfroeller.repositories.WeaponRepository;
 import org.jonasfroeller.services.NotificationService;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @Path("/ammunition-types")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class AmmunitionTypeResource {
 
@@ -35,30 +34,34 @@ public class AmmunitionTypeResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged("AmmunitionType")
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all ammunition types")
     @APIResponse(responseCode = "200", description = "List of all ammunition types")
-    public List<AmmunitionTypeDTO> getAllAmmunitionTypes() {
-        return repository.findAll().stream()
-                .map(type -> new AmmunitionTypeDTO(type.id, type.caliber, type.type))
-                .collect(Collectors.toList());
+    public Response getAllAmmunitionTypes(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged("AmmunitionType")
     @Path("/{id}")
     @Operation(summary = "Get ammunition type by ID")
     @APIResponse(responseCode = "200", description = "The ammunition type with the given ID")
     @APIResponse(responseCode = "404", description = "Ammunition type not found")
     public Response getAmmunitionTypeById(@PathParam("id") Long id) {
-        AmmunitionType type = repository.findById(id);
+        AmmunitionTypeDTO type = repository.findDTOById(id);
         if (type == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Ammunition type not found with ID: " + id))
                     .build();
         }
 
-        AmmunitionTypeDTO dto = new AmmunitionTypeDTO(type.id, type.caliber, type.type);
-        return Response.ok(dto).build();
+        return Response.ok(type).build();
     }
 
     @POST
@@ -73,10 +76,11 @@ public class AmmunitionTypeResource {
 
         repository.persist(type);
 
-        notificationService.notifyResourceCreated("AmmunitionType", type.id, type.caliber + " " + type.type);
+        AmmunitionTypeDTO created = new AmmunitionTypeDTO(type.id, type.caliber, type.type);
+        notificationService.notifyResourceCreated("AmmunitionType", type.id, null, type.caliber + " " + type.type, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(new AmmunitionTypeDTO(type.id, type.caliber, type.type))
+                .entity(created)
                 .build();
     }
 
@@ -100,9 +104,10 @@ public class AmmunitionTypeResource {
 
         repository.persist(type);
 
-        notificationService.notifyResourceUpdated("AmmunitionType", type.id, type.caliber + " " + type.type);
+        AmmunitionTypeDTO updated = new AmmunitionTypeDTO(type.id, type.caliber, type.type);
+        notificationService.notifyResourceUpdated("AmmunitionType", type.id, null, type.caliber + " " + type.type, updated);
 
-        return Response.ok(new AmmunitionTypeDTO(type.id, type.caliber, type.type)).build();
+        return Response.ok(updated).build();
     }
 
     @DELETE
@@ -0,0 +1,68 @@
+package org.jonasfroeller.resources;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.ws.rs.core.Response;
+import org.jonasfroeller.dtos.BatchErrorDTO;
+import org.jonasfroeller.dtos.BatchResultDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+// Batch endpoints validate every item on its own, so one bad item does not reject the whole request
+// unless the client asks for an atomic batch.
+@ApplicationScoped
+public class Batches {
+    public static final int MAX_SIZE = 1000;
+
+    @Inject
+    Validator validator;
+
+    // Error message per item index, items without constraint violations are not in the map
+    public <T> Map<Integer, String> validate(List<T> items) {
+        Map<Integer, String> errors = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            if (item == null) {
+                errors.put(i, "Item cannot be null");
+                continue;
+            }
+
+            Set<ConstraintViolation<T>> violations = validator.validate(item);
+            if (!violations.isEmpty()) {
+                errors.put(i, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+            }
+        }
+        return errors;
+    }
+
+    // Answer for an atomic batch where at least one item failed, nothing has been written
+    public Response rejected(Map<Integer, String> errors) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity(new BatchResultDTO<>(List.of(), toErrors(errors)))
+                .build();
+    }
+
+    // successStatus is only used if every item was written
+    public <T> Response result(List<T> items, Map<Integer, String> errors, Response.Status successStatus) {
+        Response.Status status = errors.isEmpty() ? successStatus : Response.Status.OK;
+        return Response.status(status)
+                .entity(new BatchResultDTO<>(items, toErrors(errors)))
+                .build();
+    }
+
+    private List<BatchErrorDTO> toErrors(Map<Integer, String> errors) {
+        List<BatchErrorDTO> result = new ArrayList<>(errors.size());
+        errors.forEach((index, error) -> result.add(new BatchErrorDTO(index, error)));
+        return result;
+    }
+}
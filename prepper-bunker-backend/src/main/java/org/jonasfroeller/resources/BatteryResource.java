@@ -1,6 +1,7 @@
 package org.jonasfroeller.resources;
 
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
@@ -10,17 +11,20 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jonasfroeller.dtos.BatteryCreateDTO;
 import org.jonasfroeller.dtos.BatteryDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.Battery;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.BatteryRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.services.InventoryCounterService;
 import org.jonasfroeller.services.NotificationService;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import static org.jonasfroeller.services.InventoryCounterService.counted;
 
 @Path("/batteries")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class BatteryResource {
 
@@ -30,60 +34,71 @@ public class BatteryResource {
     @Inject
     StorageLocationRepository storageLocationRepository;
 
+    @Inject
+    InventoryCounterService inventoryCounters;
+
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged({"Battery", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all batteries")
     @APIResponse(responseCode = "200", description = "List of all batteries")
-    public List<BatteryDTO> getAllBatteries() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllBatteries(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Battery", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get battery by ID")
     @APIResponse(responseCode = "200", description = "The battery with the given ID")
     @APIResponse(responseCode = "404", description = "Battery not found")
     public Response getBatteryById(@PathParam("id") Long id) {
-        Battery battery = repository.findById(id);
+        BatteryDTO battery = repository.findDTOById(id);
         if (battery == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Battery not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(battery)).build();
+        return Response.ok(battery).build();
     }
 
     @GET
+    @ETagged({"Battery", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get batteries by storage location")
     @APIResponse(responseCode = "200", description = "List of batteries at the specified location")
-    public List<BatteryDTO> getBatteriesByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getBatteriesByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @ETagged({"Battery", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-type/{type}")
     @Operation(summary = "Get batteries by type")
     @APIResponse(responseCode = "200", description = "List of batteries of the specified type")
-    public List<BatteryDTO> getBatteriesByType(@PathParam("type") String type) {
-        return repository.findByType(type).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getBatteriesByType(@PathParam("type") String type, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByType(type, page));
     }
 
     @GET
+    @ETagged({"Battery", "StorageLocation"})
     @Path("/total-by-type/{type}")
     @Operation(summary = "Get total quantity of a battery type")
     @APIResponse(responseCode = "200", description = "Total quantity of the specified battery type")
     public Response getTotalQuantityByType(@PathParam("type") String type) {
-        int totalQuantity = repository.getTotalQuantityByType(type);
+        int totalQuantity = (int) inventoryCounters.total(InventoryCounterService.BATTERY, type).quantity();
 
         return Response.ok(new TotalQuantityResponse(type, totalQuantity)).build();
     }
@@ -108,12 +123,14 @@ public class BatteryResource {
         battery.storageLocation = storageLocation;
 
         repository.persist(battery);
+        inventoryCounters.created(counted(battery));
 
-        notificationService.notifyResourceCreated("Battery", battery.id,
-                battery.type + " " + battery.capacity + "Ah (Qty: " + battery.quantity + ")");
+        BatteryDTO created = mapToDTO(battery);
+        notificationService.notifyResourceCreated("Battery", battery.id, battery.storageLocation.id,
+                battery.type + " " + battery.capacity + "Ah (Qty: " + battery.quantity + ")", created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(battery))
+                .entity(created)
                 .build();
     }
 
@@ -125,7 +142,7 @@ public class BatteryResource {
     @APIResponse(responseCode = "404", description = "Battery not found")
     @APIResponse(responseCode = "400", description = "Invalid input data")
     public Response updateBattery(@PathParam("id") Long id, @Valid BatteryCreateDTO batteryDTO) {
-        Battery battery = repository.findById(id);
+        Battery battery = repository.findById(id, LockModeType.PESSIMISTIC_WRITE);
         if (battery == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Battery not found with ID: " + id))
@@ -139,17 +156,61 @@ public class BatteryResource {
                     .build();
         }
 
+        InventoryCounterService.Item before = counted(battery);
         battery.type = batteryDTO.type;
         battery.capacity = batteryDTO.capacity;
         battery.quantity = batteryDTO.quantity;
         battery.storageLocation = storageLocation;
 
         repository.persist(battery);
+        inventoryCounters.updated(before, counted(battery));
+
+        BatteryDTO updated = mapToDTO(battery);
+        notificationService.notifyResourceUpdated("Battery", battery.id, battery.storageLocation.id,
+                battery.type + " " + battery.capacity + "Ah (Qty: " + battery.quantity + ")", updated);
+
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock a battery", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta, or the quantity would exceed 2147483647")
+    @APIResponse(responseCode = "404", description = "Battery not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustBattery(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        if (adjustment.delta % 1 != 0 || Math.abs(adjustment.delta) > Integer.MAX_VALUE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Delta must be a whole number, got: " + adjustment.delta))
+                    .build();
+        }
+
+        int delta = adjustment.delta.intValue();
+        if (!repository.adjustQuantity(id, delta)) {
+            BatteryDTO battery = repository.findDTOById(id);
+            if (battery == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Battery not found with ID: " + id))
+                        .build();
+            }
+            if ((long) battery.quantity + delta > Integer.MAX_VALUE) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ErrorResponse("Quantity would exceed " + Integer.MAX_VALUE + ", quantity is " + battery.quantity + " but delta is " + delta))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + battery.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        BatteryDTO battery = repository.findDTOById(id);
+        inventoryCounters.adjusted(counted(battery), delta);
 
-        notificationService.notifyResourceUpdated("Battery", battery.id,
-                battery.type + " " + battery.capacity + "Ah (Qty: " + battery.quantity + ")");
+        notificationService.notifyResourceUpdated("Battery", id, battery.storageLocationId, battery.type + " " + battery.capacity + "Ah (Qty: " + battery.quantity + ")", battery);
 
-        return Response.ok(mapToDTO(battery)).build();
+        return Response.ok(battery).build();
     }
 
     @DELETE
@@ -159,7 +220,7 @@ public class BatteryResource {
     @APIResponse(responseCode = "204", description = "Battery deleted")
     @APIResponse(responseCode = "404", description = "Battery not found")
     public Response deleteBattery(@PathParam("id") Long id) {
-        Battery battery = repository.findById(id);
+        Battery battery = repository.findById(id, LockModeType.PESSIMISTIC_WRITE);
         if (battery == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Battery not found with ID: " + id))
@@ -167,10 +228,12 @@ public class BatteryResource {
         }
 
         String batteryDescription = battery.type + " " + battery.capacity + "Ah (Qty: " + battery.quantity + ")";
+        Long storageLocationId = battery.storageLocation == null ? null : battery.storageLocation.id;
 
         repository.delete(battery);
+        inventoryCounters.deleted(counted(battery));
 
-        notificationService.notifyResourceDeleted("Battery", id, batteryDescription);
+        notificationService.notifyResourceDeleted("Battery", id, storageLocationId, batteryDescription);
 
         return Response.noContent().build();
     }
@@ -0,0 +1,40 @@
+package org.jonasfroeller.resources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+// Writes response entities as CBOR or Smile when the client negotiated one of them (see BinaryFormats)
+@Provider
+@Produces({BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+public class BinaryBodyWriter implements MessageBodyWriter<Object> {
+
+    @Inject
+    BinaryFormats binaryFormats;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        // Bodies that are already encoded, e.g. from the ResponseCache, are written as they are
+        return type != byte[].class && !StreamingOutput.class.isAssignableFrom(type)
+                && binaryFormats.mapperFor(mediaType) != null;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        // The container closes the stream once the response is complete
+        binaryFormats.mapperFor(mediaType).writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(entityStream, entity);
+    }
+}
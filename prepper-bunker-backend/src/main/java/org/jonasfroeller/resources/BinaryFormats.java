@@ -0,0 +1,90 @@
+package org.jonasfroeller.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+
+// Compact binary alternatives to JSON for clients on slow links, selected with the Accept header.
+// Both are schemaless encodings of the same tree as the JSON body, so the DTOs need no changes: CBOR (RFC 8949)
+// has decoders for most languages, Smile is Jackson's own format and also shares repeated field names.
+@ApplicationScoped
+public class BinaryFormats {
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    static final MediaType CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+    static final MediaType SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper smileMapper;
+
+    // Copies of the application's mapper, with its modules and settings (e.g. dates as ISO strings)
+    @Inject
+    public BinaryFormats(ObjectMapper objectMapper) {
+        cborMapper = objectMapper.copyWith(new CBORFactory());
+        smileMapper = objectMapper.copyWith(new SmileFactory());
+    }
+
+    // null if the media type is not one of the binary formats, also for wildcards (they get JSON)
+    ObjectMapper mapperFor(MediaType mediaType) {
+        MediaType format = formatOf(mediaType);
+        if (format == CBOR_TYPE) {
+            return cborMapper;
+        }
+        return format == SMILE_TYPE ? smileMapper : null;
+    }
+
+    // The binary format an Accept header prefers to JSON, null if it prefers JSON (or anything, or has no Accept)
+    MediaType preferred(String accept) {
+        if (accept == null) {
+            return null;
+        }
+
+        MediaType best = null;
+        double bestQuality = 0;
+        for (String range : accept.split(",")) {
+            MediaType mediaType;
+            try {
+                mediaType = MediaType.valueOf(range.trim());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            MediaType format = formatOf(mediaType);
+            double quality = quality(mediaType);
+            // On equal quality the earlier one wins
+            if (format != null && quality > bestQuality) {
+                best = format;
+                bestQuality = quality;
+            }
+        }
+        return best == MediaType.APPLICATION_JSON_TYPE ? null : best;
+    }
+
+    private static MediaType formatOf(MediaType mediaType) {
+        if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+            return mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE) ? MediaType.APPLICATION_JSON_TYPE : null;
+        }
+        if (mediaType.isCompatible(CBOR_TYPE)) {
+            return CBOR_TYPE;
+        }
+        if (mediaType.isCompatible(SMILE_TYPE)) {
+            return SMILE_TYPE;
+        }
+        return mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE) ? MediaType.APPLICATION_JSON_TYPE : null;
+    }
+
+    private static double quality(MediaType mediaType) {
+        String q = mediaType.getParameters().get("q");
+        if (q == null) {
+            return 1;
+        }
+        try {
+            return Double.parseDouble(q);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
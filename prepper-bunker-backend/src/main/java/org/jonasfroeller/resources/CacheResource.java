@@ -0,0 +1,82 @@
+package org.jonasfroeller.resources;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.jonasfroeller.dtos.CacheRegionStatisticsDTO;
+import org.jonasfroeller.dtos.CacheStatisticsDTO;
+import org.jonasfroeller.services.ResponseCache;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+// Second-level and query cache of the reference entities (storage locations, fuel and ammunition types)
+// and the response cache of the hot list endpoints
+@Path("/cache")
+@Produces(MediaType.APPLICATION_JSON)
+public class CacheResource {
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    ResponseCache responseCache;
+
+    @GET
+    @Path("/statistics")
+    @Operation(summary = "Get cache hit/miss statistics and the number of SQL statements since the last reset")
+    @APIResponse(responseCode = "200", description = "Cache statistics, overall and per cache region")
+    public Response getStatistics() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        List<CacheRegionStatisticsDTO> regions = Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> {
+                    CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+                    return new CacheRegionStatisticsDTO(region, regionStatistics.getHitCount(),
+                            regionStatistics.getMissCount(), regionStatistics.getPutCount(),
+                            regionStatistics.getElementCountInMemory());
+                })
+                .toList();
+
+        return Response.ok(new CacheStatisticsDTO(
+                Instant.ofEpochMilli(statistics.getStartTime()),
+                statistics.getPrepareStatementCount(),
+                statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(),
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                regions,
+                responseCache.statistics()
+        )).build();
+    }
+
+    @DELETE
+    @Path("/statistics")
+    @Operation(summary = "Reset the cache statistics, e.g. before measuring a workload")
+    @APIResponse(responseCode = "204", description = "Statistics reset")
+    public Response resetStatistics() {
+        sessionFactory.getStatistics().clear();
+        responseCache.resetStatistics();
+
+        return Response.noContent().build();
+    }
+
+    @DELETE
+    @Operation(summary = "Evict every cached entity, query result and response",
+            description = "Only needed after the database was changed behind the application's back.")
+    @APIResponse(responseCode = "204", description = "Caches evicted")
+    public Response evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+        responseCache.invalidateAll();
+
+        return Response.noContent().build();
+    }
+}
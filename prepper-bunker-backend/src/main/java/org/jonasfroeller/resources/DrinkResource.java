@@ -3,24 +3,35 @@ package org.jonasfroeller.resources;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.DrinkBatchUpdateDTO;
 import org.jonasfroeller.dtos.DrinkCreateDTO;
 import org.jonasfroeller.dtos.DrinkDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.Drink;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.DrinkRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.services.ExpiryIndex;
 import org.jonasfroeller.services.NotificationService;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Path("/drinks")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class DrinkResource {
 
@@ -33,59 +44,71 @@ public class DrinkResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @Inject
+    Pages pages;
+
+    @Inject
+    Batches batches;
+
     @GET
+    @ETagged({"Drink", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all drinks")
     @APIResponse(responseCode = "200", description = "List of all drinks")
-    public List<DrinkDTO> getAllDrinks() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllDrinks(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Drink", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get drink by ID")
     @APIResponse(responseCode = "200", description = "The drink with the given ID")
     @APIResponse(responseCode = "404", description = "Drink not found")
     public Response getDrinkById(@PathParam("id") Long id) {
-        Drink drink = repository.findById(id);
+        DrinkDTO drink = repository.findDTOById(id);
         if (drink == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Drink not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(drink)).build();
+        return Response.ok(drink).build();
     }
 
     @GET
+    @ETagged({"Drink", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get drinks by storage location")
     @APIResponse(responseCode = "200", description = "List of drinks at the specified location")
-    public List<DrinkDTO> getDrinksByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getDrinksByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/expired")
     @Operation(summary = "Get expired drinks")
     @APIResponse(responseCode = "200", description = "List of expired drinks")
-    public List<DrinkDTO> getExpiredDrinks() {
-        return repository.findExpiredItems().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getExpiredDrinks(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findExpiredItems(page));
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/expiring-soon")
     @Operation(summary = "Get drinks expiring within the next month")
     @APIResponse(responseCode = "200", description = "List of drinks expiring soon")
-    public List<DrinkDTO> getDrinksExpiringSoon() {
-        return repository.findItemsExpiringSoon().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getDrinksExpiringSoon(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findItemsExpiringSoon(page));
     }
 
     @POST
@@ -109,10 +132,12 @@ public class DrinkResource {
 
         repository.persist(drink);
 
-        notificationService.notifyResourceCreated("Drink", drink.id, drink.type);
+        expiryIndex.changed(ExpiryIndex.DRINK, drink.id, drink.storageLocation.id, drink.type, drink.expirationDate);
+        DrinkDTO created = mapToDTO(drink);
+        notificationService.notifyResourceCreated("Drink", drink.id, drink.storageLocation.id, drink.type, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(drink))
+                .entity(created)
                 .build();
     }
 
@@ -145,9 +170,147 @@ public class DrinkResource {
 
         repository.persist(drink);
 
-        notificationService.notifyResourceUpdated("Drink", drink.id, drink.type);
+        expiryIndex.changed(ExpiryIndex.DRINK, drink.id, drink.storageLocation.id, drink.type, drink.expirationDate);
+        DrinkDTO updated = mapToDTO(drink);
+        notificationService.notifyResourceUpdated("Drink", drink.id, drink.storageLocation.id, drink.type, updated);
+
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/batch")
+    @Transactional
+    @Operation(summary = "Create several drinks at once")
+    @APIResponse(responseCode = "201", description = "All drinks created")
+    @APIResponse(responseCode = "200", description = "Some drinks created, the rest are listed as errors")
+    @APIResponse(responseCode = "400", description = "Atomic batch with invalid items, nothing created")
+    public Response createDrinkBatch(@NotNull @Size(max = Batches.MAX_SIZE) List<DrinkCreateDTO> drinkDTOs,
+                                    @QueryParam("atomic") boolean atomic) {
+        Map<Integer, String> errors = batches.validate(drinkDTOs);
+        Map<Long, StorageLocation> storageLocations = storageLocationRepository.findByIds(
+                drinkDTOs.stream().filter(Objects::nonNull).map(dto -> dto.storageLocationId).toList());
+
+        for (int i = 0; i < drinkDTOs.size(); i++) {
+            DrinkCreateDTO drinkDTO = drinkDTOs.get(i);
+            if (!errors.containsKey(i) && !storageLocations.containsKey(drinkDTO.storageLocationId)) {
+                errors.put(i, "Storage location not found with ID: " + drinkDTO.storageLocationId);
+            }
+        }
+
+        if (atomic && !errors.isEmpty()) {
+            return batches.rejected(errors);
+        }
+
+        List<DrinkDTO> created = new ArrayList<>();
+        for (int i = 0; i < drinkDTOs.size(); i++) {
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            DrinkCreateDTO drinkDTO = drinkDTOs.get(i);
+            Drink drink = new Drink();
+            drink.type = drinkDTO.type;
+            drink.quantity = drinkDTO.quantity;
+            drink.expirationDate = drinkDTO.expirationDate;
+            drink.storageLocation = storageLocations.get(drinkDTO.storageLocationId);
+
+            repository.persist(drink);
+            expiryIndex.changed(ExpiryIndex.DRINK, drink.id, drink.storageLocation.id, drink.type, drink.expirationDate);
+            created.add(mapToDTO(drink));
+        }
+
+        if (!created.isEmpty()) {
+            notificationService.notifyResourcesCreated("Drink", created);
+        }
+
+        return batches.result(created, errors, Response.Status.CREATED);
+    }
+
+    @PUT
+    @Path("/batch")
+    @Transactional
+    @Operation(summary = "Update several drinks at once")
+    @APIResponse(responseCode = "200", description = "Drinks updated, rejected items are listed as errors")
+    @APIResponse(responseCode = "400", description = "Atomic batch with invalid items, nothing updated")
+    public Response updateDrinkBatch(@NotNull @Size(max = Batches.MAX_SIZE) List<DrinkBatchUpdateDTO> drinkDTOs,
+                                    @QueryParam("atomic") boolean atomic) {
+        Map<Integer, String> errors = batches.validate(drinkDTOs);
+        Map<Long, Drink> drinks = repository.findByIds(
+                drinkDTOs.stream().filter(Objects::nonNull).map(dto -> dto.id).toList());
+        Map<Long, StorageLocation> storageLocations = storageLocationRepository.findByIds(
+                drinkDTOs.stream().filter(Objects::nonNull).map(dto -> dto.storageLocationId).toList());
+
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < drinkDTOs.size(); i++) {
+            DrinkBatchUpdateDTO drinkDTO = drinkDTOs.get(i);
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            if (!drinks.containsKey(drinkDTO.id)) {
+                errors.put(i, "Drink not found with ID: " + drinkDTO.id);
+            } else if (!seenIds.add(drinkDTO.id)) {
+                errors.put(i, "Drink with ID " + drinkDTO.id + " appears more than once");
+            } else if (!storageLocations.containsKey(drinkDTO.storageLocationId)) {
+                errors.put(i, "Storage location not found with ID: " + drinkDTO.storageLocationId);
+            }
+        }
+
+        if (atomic && !errors.isEmpty()) {
+            return batches.rejected(errors);
+        }
+
+        List<DrinkDTO> updated = new ArrayList<>();
+        for (int i = 0; i < drinkDTOs.size(); i++) {
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            DrinkBatchUpdateDTO drinkDTO = drinkDTOs.get(i);
+            Drink drink = drinks.get(drinkDTO.id);
+            drink.type = drinkDTO.type;
+            drink.quantity = drinkDTO.quantity;
+            drink.expirationDate = drinkDTO.expirationDate;
+            drink.storageLocation = storageLocations.get(drinkDTO.storageLocationId);
+
+            expiryIndex.changed(ExpiryIndex.DRINK, drink.id, drink.storageLocation.id, drink.type, drink.expirationDate);
+            updated.add(mapToDTO(drink));
+        }
+
+        if (!updated.isEmpty()) {
+            notificationService.notifyResourcesUpdated("Drink", updated);
+        }
+
+        return batches.result(updated, errors, Response.Status.OK);
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock a drink", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta")
+    @APIResponse(responseCode = "404", description = "Drink not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustDrink(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        double delta = adjustment.delta;
+        if (!repository.adjustQuantity(id, delta)) {
+            DrinkDTO drink = repository.findDTOById(id);
+            if (drink == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Drink not found with ID: " + id))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + drink.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        DrinkDTO drink = repository.findDTOById(id);
+
+        notificationService.notifyResourceUpdated("Drink", id, drink.storageLocationId, drink.type, drink);
 
-        return Response.ok(mapToDTO(drink)).build();
+        return Response.ok(drink).build();
     }
 
     @DELETE
@@ -165,10 +328,12 @@ public class DrinkResource {
         }
 
         String drinkType = drink.type;
+        Long storageLocationId = drink.storageLocation == null ? null : drink.storageLocation.id;
 
         repository.delete(drink);
 
-        notificationService.notifyResourceDeleted("Drink", id, drinkType);
+        expiryIndex.deleted(ExpiryIndex.DRINK, id);
+        notificationService.notifyResourceDeleted("Drink", id, storageLocationId, drinkType);
 
         return Response.noContent().build();
     }
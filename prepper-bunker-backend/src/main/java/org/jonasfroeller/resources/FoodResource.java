@@ -3,24 +3,37 @@ package org.jonasfroeller.resources;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.FoodBatchUpdateDTO;
 import org.jonasfroeller.dtos.FoodCreateDTO;
 import org.jonasfroeller.dtos.FoodDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.Food;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.FoodRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.services.ExpiryIndex;
 import org.jonasfroeller.services.NotificationService;
+import org.jonasfroeller.services.ResponseCache;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Path("/food")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class FoodResource {
 
@@ -33,59 +46,74 @@ public class FoodResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @Inject
+    Pages pages;
+
+    @Inject
+    Batches batches;
+
     @GET
+    @ETagged({"Food", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all food items")
     @APIResponse(responseCode = "200", description = "List of all food items")
-    public List<FoodDTO> getAllFood() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllFood(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Food", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get food item by ID")
     @APIResponse(responseCode = "200", description = "The food item with the given ID")
     @APIResponse(responseCode = "404", description = "Food item not found")
     public Response getFoodById(@PathParam("id") Long id) {
-        Food food = repository.findById(id);
+        FoodDTO food = repository.findDTOById(id);
         if (food == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Food item not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(food)).build();
+        return Response.ok(food).build();
     }
 
     @GET
+    @ETagged({"Food", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get food items by storage location")
     @APIResponse(responseCode = "200", description = "List of food items at the specified location")
-    public List<FoodDTO> getFoodByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getFoodByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.cached(page, "/food/by-location/" + locationId, "Food", locationId, FoodResource::cacheTags,
+                () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/expired")
     @Operation(summary = "Get expired food items")
     @APIResponse(responseCode = "200", description = "List of expired food items")
-    public List<FoodDTO> getExpiredFood() {
-        return repository.findExpiredItems().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getExpiredFood(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findExpiredItems(page));
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/expiring-soon")
     @Operation(summary = "Get food items expiring within the next month")
     @APIResponse(responseCode = "200", description = "List of food items expiring soon")
-    public List<FoodDTO> getFoodExpiringSoon() {
-        return repository.findItemsExpiringSoon().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getFoodExpiringSoon(@Valid @BeanParam PageRequest page) {
+        // The window moves with the date, yesterday's entry is left to be evicted
+        return pages.cached(page, "/food/expiring-soon/" + LocalDate.now(), "Food", null, FoodResource::cacheTags,
+                () -> repository.findItemsExpiringSoon(page));
     }
 
     @POST
@@ -109,10 +137,12 @@ public class FoodResource {
 
         repository.persist(food);
 
-        notificationService.notifyResourceCreated("Food", food.id, food.type);
+        expiryIndex.changed(ExpiryIndex.FOOD, food.id, food.storageLocation.id, food.type, food.expirationDate);
+        FoodDTO created = mapToDTO(food);
+        notificationService.notifyResourceCreated("Food", food.id, food.storageLocation.id, food.type, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(food))
+                .entity(created)
                 .build();
     }
 
@@ -145,9 +175,147 @@ public class FoodResource {
 
         repository.persist(food);
 
-        notificationService.notifyResourceUpdated("Food", food.id, food.type);
+        expiryIndex.changed(ExpiryIndex.FOOD, food.id, food.storageLocation.id, food.type, food.expirationDate);
+        FoodDTO updated = mapToDTO(food);
+        notificationService.notifyResourceUpdated("Food", food.id, food.storageLocation.id, food.type, updated);
+
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/batch")
+    @Transactional
+    @Operation(summary = "Create several food items at once")
+    @APIResponse(responseCode = "201", description = "All food items created")
+    @APIResponse(responseCode = "200", description = "Some food items created, the rest are listed as errors")
+    @APIResponse(responseCode = "400", description = "Atomic batch with invalid items, nothing created")
+    public Response createFoodBatch(@NotNull @Size(max = Batches.MAX_SIZE) List<FoodCreateDTO> foodDTOs,
+                                    @QueryParam("atomic") boolean atomic) {
+        Map<Integer, String> errors = batches.validate(foodDTOs);
+        Map<Long, StorageLocation> storageLocations = storageLocationRepository.findByIds(
+                foodDTOs.stream().filter(Objects::nonNull).map(dto -> dto.storageLocationId).toList());
+
+        for (int i = 0; i < foodDTOs.size(); i++) {
+            FoodCreateDTO foodDTO = foodDTOs.get(i);
+            if (!errors.containsKey(i) && !storageLocations.containsKey(foodDTO.storageLocationId)) {
+                errors.put(i, "Storage location not found with ID: " + foodDTO.storageLocationId);
+            }
+        }
+
+        if (atomic && !errors.isEmpty()) {
+            return batches.rejected(errors);
+        }
+
+        List<FoodDTO> created = new ArrayList<>();
+        for (int i = 0; i < foodDTOs.size(); i++) {
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            FoodCreateDTO foodDTO = foodDTOs.get(i);
+            Food food = new Food();
+            food.type = foodDTO.type;
+            food.quantity = foodDTO.quantity;
+            food.expirationDate = foodDTO.expirationDate;
+            food.storageLocation = storageLocations.get(foodDTO.storageLocationId);
+
+            repository.persist(food);
+            expiryIndex.changed(ExpiryIndex.FOOD, food.id, food.storageLocation.id, food.type, food.expirationDate);
+            created.add(mapToDTO(food));
+        }
 
-        return Response.ok(mapToDTO(food)).build();
+        if (!created.isEmpty()) {
+            notificationService.notifyResourcesCreated("Food", created);
+        }
+
+        return batches.result(created, errors, Response.Status.CREATED);
+    }
+
+    @PUT
+    @Path("/batch")
+    @Transactional
+    @Operation(summary = "Update several food items at once")
+    @APIResponse(responseCode = "200", description = "Food items updated, rejected items are listed as errors")
+    @APIResponse(responseCode = "400", description = "Atomic batch with invalid items, nothing updated")
+    public Response updateFoodBatch(@NotNull @Size(max = Batches.MAX_SIZE) List<FoodBatchUpdateDTO> foodDTOs,
+                                    @QueryParam("atomic") boolean atomic) {
+        Map<Integer, String> errors = batches.validate(foodDTOs);
+        Map<Long, Food> foods = repository.findByIds(
+                foodDTOs.stream().filter(Objects::nonNull).map(dto -> dto.id).toList());
+        Map<Long, StorageLocation> storageLocations = storageLocationRepository.findByIds(
+                foodDTOs.stream().filter(Objects::nonNull).map(dto -> dto.storageLocationId).toList());
+
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < foodDTOs.size(); i++) {
+            FoodBatchUpdateDTO foodDTO = foodDTOs.get(i);
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            if (!foods.containsKey(foodDTO.id)) {
+                errors.put(i, "Food item not found with ID: " + foodDTO.id);
+            } else if (!seenIds.add(foodDTO.id)) {
+                errors.put(i, "Food item with ID " + foodDTO.id + " appears more than once");
+            } else if (!storageLocations.containsKey(foodDTO.storageLocationId)) {
+                errors.put(i, "Storage location not found with ID: " + foodDTO.storageLocationId);
+            }
+        }
+
+        if (atomic && !errors.isEmpty()) {
+            return batches.rejected(errors);
+        }
+
+        List<FoodDTO> updated = new ArrayList<>();
+        for (int i = 0; i < foodDTOs.size(); i++) {
+            if (errors.containsKey(i)) {
+                continue;
+            }
+
+            FoodBatchUpdateDTO foodDTO = foodDTOs.get(i);
+            Food food = foods.get(foodDTO.id);
+            food.type = foodDTO.type;
+            food.quantity = foodDTO.quantity;
+            food.expirationDate = foodDTO.expirationDate;
+            food.storageLocation = storageLocations.get(foodDTO.storageLocationId);
+
+            expiryIndex.changed(ExpiryIndex.FOOD, food.id, food.storageLocation.id, food.type, food.expirationDate);
+            updated.add(mapToDTO(food));
+        }
+
+        if (!updated.isEmpty()) {
+            notificationService.notifyResourcesUpdated("Food", updated);
+        }
+
+        return batches.result(updated, errors, Response.Status.OK);
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock a food item", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta")
+    @APIResponse(responseCode = "404", description = "Food item not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustFood(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        double delta = adjustment.delta;
+        if (!repository.adjustQuantity(id, delta)) {
+            FoodDTO food = repository.findDTOById(id);
+            if (food == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Food item not found with ID: " + id))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + food.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        FoodDTO food = repository.findDTOById(id);
+
+        notificationService.notifyResourceUpdated("Food", id, food.storageLocationId, food.type, food);
+
+        return Response.ok(food).build();
     }
 
     @DELETE
@@ -165,10 +333,12 @@ public class FoodResource {
         }
 
         String foodType = food.type;
+        Long storageLocationId = food.storageLocation == null ? null : food.storageLocation.id;
 
         repository.delete(food);
 
-        notificationService.notifyResourceDeleted("Food", id, foodType);
+        expiryIndex.deleted(ExpiryIndex.FOOD, id);
+        notificationService.notifyResourceDeleted("Food", id, storageLocationId, foodType);
 
         return Response.noContent().build();
     }
@@ -184,6 +354,10 @@ public class FoodResource {
         );
     }
 
+    private static List<String> cacheTags(FoodDTO food) {
+        return List.of(ResponseCache.one("Food", food.id), ResponseCache.one("StorageLocation", food.storageLocationId));
+    }
+
     public static class ErrorResponse {
         public String error;
 
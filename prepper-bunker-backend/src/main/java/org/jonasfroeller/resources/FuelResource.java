@@ -1,6 +1,7 @@
 package org.jonasfroeller.resources;
 
 import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
@@ -10,19 +11,22 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jonasfroeller.dtos.FuelCreateDTO;
 import org.jonasfroeller.dtos.FuelDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.Fuel;
 import org.jonasfroeller.models.FuelType;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.FuelRepository;
 import org.jonasfroeller.repositories.FuelTypeRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.services.InventoryCounterService;
 import org.jonasfroeller.services.NotificationService;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import static org.jonasfroeller.services.InventoryCounterService.counted;
 
 @Path("/fuel")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class FuelResource {
 
@@ -35,55 +39,66 @@ public class FuelResource {
     @Inject
     StorageLocationRepository storageLocationRepository;
 
+    @Inject
+    InventoryCounterService inventoryCounters;
+
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged({"Fuel", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all fuel records")
     @APIResponse(responseCode = "200", description = "List of all fuel records")
-    public List<FuelDTO> getAllFuel() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllFuel(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Fuel", "FuelType", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get fuel record by ID")
     @APIResponse(responseCode = "200", description = "The fuel record with the given ID")
     @APIResponse(responseCode = "404", description = "Fuel record not found")
     public Response getFuelById(@PathParam("id") Long id) {
-        Fuel fuel = repository.findById(id);
+        FuelDTO fuel = repository.findDTOById(id);
         if (fuel == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Fuel record not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(fuel)).build();
+        return Response.ok(fuel).build();
     }
 
     @GET
+    @ETagged({"Fuel", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get fuel records by storage location")
     @APIResponse(responseCode = "200", description = "List of fuel records at the specified location")
-    public List<FuelDTO> getFuelByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getFuelByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @ETagged({"Fuel", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-type/{typeId}")
     @Operation(summary = "Get fuel records by fuel type")
     @APIResponse(responseCode = "200", description = "List of fuel records of the specified type")
-    public List<FuelDTO> getFuelByType(@PathParam("typeId") Long typeId) {
-        return repository.findByFuelType(typeId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getFuelByType(@PathParam("typeId") Long typeId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByFuelType(typeId, page));
     }
 
     @GET
+    @ETagged({"Fuel", "FuelType", "StorageLocation"})
     @Path("/total-by-type/{typeId}")
     @Operation(summary = "Get total quantity of a fuel type")
     @APIResponse(responseCode = "200", description = "Total quantity of the specified fuel type")
@@ -96,7 +111,7 @@ public class FuelResource {
                     .build();
         }
 
-        double totalQuantity = repository.getTotalQuantityByType(typeId);
+        double totalQuantity = inventoryCounters.total(InventoryCounterService.FUEL, String.valueOf(typeId)).quantity();
 
         return Response.ok(new TotalQuantityResponse(fuelType.name, totalQuantity)).build();
     }
@@ -127,11 +142,13 @@ public class FuelResource {
         fuel.storageLocation = storageLocation;
 
         repository.persist(fuel);
+        inventoryCounters.created(counted(fuel));
 
-        notificationService.notifyResourceCreated("Fuel", fuel.id, fuelType.name + " (Qty: " + fuel.quantity + ")");
+        FuelDTO created = mapToDTO(fuel);
+        notificationService.notifyResourceCreated("Fuel", fuel.id, fuel.storageLocation.id, fuelType.name + " (Qty: " + fuel.quantity + ")", created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(fuel))
+                .entity(created)
                 .build();
     }
 
@@ -143,7 +160,7 @@ public class FuelResource {
     @APIResponse(responseCode = "404", description = "Fuel record not found")
     @APIResponse(responseCode = "400", description = "Invalid input data")
     public Response updateFuel(@PathParam("id") Long id, @Valid FuelCreateDTO fuelDTO) {
-        Fuel fuel = repository.findById(id);
+        Fuel fuel = repository.findById(id, LockModeType.PESSIMISTIC_WRITE);
         if (fuel == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Fuel record not found with ID: " + id))
@@ -164,15 +181,48 @@ public class FuelResource {
                     .build();
         }
 
+        InventoryCounterService.Item before = counted(fuel);
         fuel.quantity = fuelDTO.quantity;
         fuel.fuelType = fuelType;
         fuel.storageLocation = storageLocation;
 
         repository.persist(fuel);
+        inventoryCounters.updated(before, counted(fuel));
+
+        FuelDTO updated = mapToDTO(fuel);
+        notificationService.notifyResourceUpdated("Fuel", fuel.id, fuel.storageLocation.id, fuelType.name + " (Qty: " + fuel.quantity + ")", updated);
+
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock a fuel record", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta")
+    @APIResponse(responseCode = "404", description = "Fuel record not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustFuel(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        double delta = adjustment.delta;
+        if (!repository.adjustQuantity(id, delta)) {
+            FuelDTO fuel = repository.findDTOById(id);
+            if (fuel == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Fuel record not found with ID: " + id))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + fuel.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        FuelDTO fuel = repository.findDTOById(id);
+        inventoryCounters.adjusted(counted(fuel), delta);
 
-        notificationService.notifyResourceUpdated("Fuel", fuel.id, fuelType.name + " (Qty: " + fuel.quantity + ")");
+        notificationService.notifyResourceUpdated("Fuel", id, fuel.storageLocationId, fuel.fuelTypeName + " (Qty: " + fuel.quantity + ")", fuel);
 
-        return Response.ok(mapToDTO(fuel)).build();
+        return Response.ok(fuel).build();
     }
 
     @DELETE
@@ -182,7 +232,7 @@ public class FuelResource {
     @APIResponse(responseCode = "204", description = "Fuel record deleted")
     @APIResponse(responseCode = "404", description = "Fuel record not found")
     public Response deleteFuel(@PathParam("id") Long id) {
-        Fuel fuel = repository.findById(id);
+        Fuel fuel = repository.lockByIdWithFuelType(id);
         if (fuel == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Fuel record not found with ID: " + id))
@@ -190,10 +240,12 @@ public class FuelResource {
         }
 
         String fuelDescription = fuel.fuelType.name + " (Qty: " + fuel.quantity + ")";
+        Long storageLocationId = fuel.storageLocation == null ? null : fuel.storageLocation.id;
 
         repository.delete(fuel);
+        inventoryCounters.deleted(counted(fuel));
 
-        notificationService.notifyResourceDeleted("Fuel", id, fuelDescription);
+        notificationService.notifyResourceDeleted("Fuel", id, storageLocationId, fuelDescription);
 
         return Response.noContent().build();
     }
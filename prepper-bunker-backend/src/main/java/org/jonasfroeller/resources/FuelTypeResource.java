@@ -10,17 +10,16 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jonasfroeller.dtos.FuelTypeCreateDTO;
 import org.jonasfroeller.dtos.FuelTypeDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.FuelType;
 import org.jonasfroeller.repositories.FuelRepository;
 import org.jonasfroeller.repositories.FuelTypeRepository;
 import org.jonasfroeller.repositories.GeneratorRepository;
 import org.jonasfroeller.services.NotificationService;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @Path("/fuel-types")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class FuelTypeResource {
 
@@ -36,30 +35,34 @@ public class FuelTypeResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged("FuelType")
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all fuel types")
     @APIResponse(responseCode = "200", description = "List of all fuel types")
-    public List<FuelTypeDTO> getAllFuelTypes() {
-        return repository.findAll().stream()
-                .map(fuelType -> new FuelTypeDTO(fuelType.id, fuelType.name))
-                .collect(Collectors.toList());
+    public Response getAllFuelTypes(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged("FuelType")
     @Path("/{id}")
     @Operation(summary = "Get fuel type by ID")
     @APIResponse(responseCode = "200", description = "The fuel type with the given ID")
     @APIResponse(responseCode = "404", description = "Fuel type not found")
     public Response getFuelTypeById(@PathParam("id") Long id) {
-        FuelType fuelType = repository.findById(id);
+        FuelTypeDTO fuelType = repository.findDTOById(id);
         if (fuelType == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Fuel type not found with ID: " + id))
                     .build();
         }
 
-        FuelTypeDTO dto = new FuelTypeDTO(fuelType.id, fuelType.name);
-        return Response.ok(dto).build();
+        return Response.ok(fuelType).build();
     }
 
     @POST
@@ -73,10 +76,11 @@ public class FuelTypeResource {
 
         repository.persist(fuelType);
 
-        notificationService.notifyResourceCreated("FuelType", fuelType.id, fuelType.name);
+        FuelTypeDTO created = new FuelTypeDTO(fuelType.id, fuelType.name);
+        notificationService.notifyResourceCreated("FuelType", fuelType.id, null, fuelType.name, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(new FuelTypeDTO(fuelType.id, fuelType.name))
+                .entity(created)
                 .build();
     }
 
@@ -99,9 +103,10 @@ public class FuelTypeResource {
 
         repository.persist(fuelType);
 
-        notificationService.notifyResourceUpdated("FuelType", fuelType.id, fuelType.name);
+        FuelTypeDTO updated = new FuelTypeDTO(fuelType.id, fuelType.name);
+        notificationService.notifyResourceUpdated("FuelType", fuelType.id, null, fuelType.name, updated);
 
-        return Response.ok(new FuelTypeDTO(fuelType.id, fuelType.name)).build();
+        return Response.ok(updated).build();
     }
 
     @DELETE
@@ -10,6 +10,8 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jonasfroeller.dtos.GeneratorCreateDTO;
 import org.jonasfroeller.dtos.GeneratorDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.FuelType;
 import org.jonasfroeller.models.Generator;
 import org.jonasfroeller.models.StorageLocation;
@@ -17,12 +19,12 @@ import org.jonasfroeller.repositories.FuelTypeRepository;
 import org.jonasfroeller.repositories.GeneratorRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
 import org.jonasfroeller.services.NotificationService;
+import org.jonasfroeller.services.ResponseCache;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/generators")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class GeneratorResource {
 
@@ -38,59 +40,69 @@ public class GeneratorResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged({"Generator", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all generators")
     @APIResponse(responseCode = "200", description = "List of all generators")
-    public List<GeneratorDTO> getAllGenerators() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllGenerators(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Generator", "FuelType", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get generator by ID")
     @APIResponse(responseCode = "200", description = "The generator with the given ID")
     @APIResponse(responseCode = "404", description = "Generator not found")
     public Response getGeneratorById(@PathParam("id") Long id) {
-        Generator generator = repository.findById(id);
+        GeneratorDTO generator = repository.findDTOById(id);
         if (generator == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Generator not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(generator)).build();
+        return Response.ok(generator).build();
     }
 
     @GET
+    @ETagged({"Generator", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get generators by storage location")
     @APIResponse(responseCode = "200", description = "List of generators at the specified location")
-    public List<GeneratorDTO> getGeneratorsByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getGeneratorsByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.cached(page, "/generators/by-location/" + locationId, "Generator", locationId,
+                GeneratorResource::cacheTags, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @ETagged({"Generator", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-fuel-type/{fuelTypeId}")
     @Operation(summary = "Get generators by fuel type")
     @APIResponse(responseCode = "200", description = "List of generators using the specified fuel type")
-    public List<GeneratorDTO> getGeneratorsByFuelType(@PathParam("fuelTypeId") Long fuelTypeId) {
-        return repository.findByFuelType(fuelTypeId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getGeneratorsByFuelType(@PathParam("fuelTypeId") Long fuelTypeId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByFuelType(fuelTypeId, page));
     }
 
     @GET
+    @ETagged({"Generator", "FuelType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-status/{status}")
     @Operation(summary = "Get generators by status")
     @APIResponse(responseCode = "200", description = "List of generators with the specified status")
-    public List<GeneratorDTO> getGeneratorsByStatus(@PathParam("status") String status) {
-        return repository.findByStatus(status).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getGeneratorsByStatus(@PathParam("status") String status, @Valid @BeanParam PageRequest page) {
+        return pages.cached(page, "/generators/by-status/" + status, "Generator", null, GeneratorResource::cacheTags,
+                () -> repository.findByStatus(status, page));
     }
 
     @POST
@@ -122,11 +134,12 @@ public class GeneratorResource {
 
         repository.persist(generator);
 
-        notificationService.notifyResourceCreated("Generator", generator.id,
-                generator.type + " " + generator.power + "kW (" + generator.status + ")");
+        GeneratorDTO created = mapToDTO(generator);
+        notificationService.notifyResourceCreated("Generator", generator.id, generator.storageLocation.id,
+                generator.type + " " + generator.power + "kW (" + generator.status + ")", created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(generator))
+                .entity(created)
                 .build();
     }
 
@@ -167,10 +180,11 @@ public class GeneratorResource {
 
         repository.persist(generator);
 
-        notificationService.notifyResourceUpdated("Generator", generator.id,
-                generator.type + " " + generator.power + "kW (" + generator.status + ")");
+        GeneratorDTO updated = mapToDTO(generator);
+        notificationService.notifyResourceUpdated("Generator", generator.id, generator.storageLocation.id,
+                generator.type + " " + generator.power + "kW (" + generator.status + ")", updated);
 
-        return Response.ok(mapToDTO(generator)).build();
+        return Response.ok(updated).build();
     }
 
     @DELETE
@@ -188,10 +202,11 @@ public class GeneratorResource {
         }
 
         String generatorDescription = generator.type + " " + generator.power + "kW (" + generator.status + ")";
+        Long storageLocationId = generator.storageLocation == null ? null : generator.storageLocation.id;
 
         repository.delete(generator);
 
-        notificationService.notifyResourceDeleted("Generator", id, generatorDescription);
+        notificationService.notifyResourceDeleted("Generator", id, storageLocationId, generatorDescription);
 
         return Response.noContent().build();
     }
@@ -209,6 +224,12 @@ public class GeneratorResource {
         );
     }
 
+    private static List<String> cacheTags(GeneratorDTO generator) {
+        return List.of(ResponseCache.one("Generator", generator.id),
+                ResponseCache.one("FuelType", generator.fuelTypeId),
+                ResponseCache.one("StorageLocation", generator.storageLocationId));
+    }
+
     public static class ErrorResponse {
         public String error;
 
@@ -0,0 +1,130 @@
+package org.jonasfroeller.resources;
+
+import jakarta.inject.Inject;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.ImportJobDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.services.ImportFormat;
+import org.jonasfroeller.services.ImportJob;
+import org.jonasfroeller.services.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Path("/import")
+@Produces(MediaType.APPLICATION_JSON)
+public class ImportResource {
+
+    @Inject
+    ImportService importService;
+
+    @POST
+    @Path("/{resourceType}")
+    @Consumes({PageRequest.APPLICATION_NDJSON, "text/csv"})
+    @Operation(summary = "Bulk import rows of a resource type from an NDJSON or CSV upload",
+            description = "resourceType is the REST path of the type, e.g. food or ammunition-stocks. " +
+                    "CSV uploads need a header row with the field names of the type's create DTO. " +
+                    "The import runs in the background and commits every chunkSize rows.")
+    @APIResponse(responseCode = "202", description = "Upload received, import queued")
+    @APIResponse(responseCode = "400", description = "Invalid chunk size")
+    @APIResponse(responseCode = "404", description = "Unknown resource type")
+    @APIResponse(responseCode = "415", description = "Upload is neither NDJSON nor CSV")
+    public Response startImport(@PathParam("resourceType") String resourceType,
+                                @QueryParam("chunkSize") @Min(1) @Max(10000) Integer chunkSize,
+                                @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+                                @Context UriInfo uriInfo,
+                                InputStream upload) throws IOException {
+        if (!importService.supports(resourceType)) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(new ErrorResponse("Unknown resource type: " + resourceType +
+                            ". Allowed values are: " + String.join(", ", importService.resourceTypes()) + "."))
+                    .build();
+        }
+
+        ImportFormat format = ImportFormat.fromContentType(contentType);
+        if (format == null) {
+            return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE)
+                    .entity(new ErrorResponse("Unsupported content type: " + contentType))
+                    .build();
+        }
+
+        ImportJob job = importService.start(resourceType, format, upload,
+                chunkSize != null ? chunkSize : importService.defaultChunkSize());
+
+        return Response.accepted(mapToDTO(job))
+                .location(uriInfo.getBaseUriBuilder().path(ImportResource.class).path("jobs").path(job.getId()).build())
+                .build();
+    }
+
+    @GET
+    @Path("/jobs/{id}")
+    @Operation(summary = "Get the progress of an import")
+    @APIResponse(responseCode = "200", description = "Status and row counts of the import")
+    @APIResponse(responseCode = "404", description = "Import not found")
+    public Response getImportJob(@PathParam("id") String id) {
+        ImportJob job = importService.getJob(id);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(new ErrorResponse("Import not found with ID: " + id))
+                    .build();
+        }
+
+        return Response.ok(mapToDTO(job)).build();
+    }
+
+    @GET
+    @Path("/jobs/{id}/errors")
+    @Produces({PageRequest.APPLICATION_NDJSON, MediaType.APPLICATION_JSON})
+    @Operation(summary = "Get the rejected rows of an import as NDJSON, one {row, error} object per line")
+    @APIResponse(responseCode = "200", description = "Rejected rows so far")
+    @APIResponse(responseCode = "404", description = "Import not found")
+    public Response getImportErrors(@PathParam("id") String id) {
+        ImportJob job = importService.getJob(id);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(new ErrorResponse("Import not found with ID: " + id))
+                    .build();
+        }
+
+        return Response.ok(job.getErrorFile().toFile(), PageRequest.APPLICATION_NDJSON).build();
+    }
+
+    private ImportJobDTO mapToDTO(ImportJob job) {
+        return new ImportJobDTO(
+                job.getId(),
+                job.getResourceType(),
+                job.getFormat().mediaType,
+                job.getStatus().name(),
+                job.getChunkSize(),
+                job.getRowsRead(),
+                job.getRowsImported(),
+                job.getRowsFailed(),
+                job.getChunksCommitted(),
+                job.getError(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt()
+        );
+    }
+
+    public static class ErrorResponse {
+        public String error;
+
+        public ErrorResponse(String error) {
+            this.error = error;
+        }
+
+        public ErrorResponse() {
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.jonasfroeller.resources;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+import org.jonasfroeller.repositories.InvalidPageRequestException;
+
+@Provider
+public class InvalidPageRequestExceptionMapper implements ExceptionMapper<InvalidPageRequestException> {
+    @Override
+    public Response toResponse(InvalidPageRequestException exception) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(new ErrorResponse(exception.getMessage()))
+                .build();
+    }
+
+    public static class ErrorResponse {
+        public String error;
+
+        public ErrorResponse(String error) {
+            this.error = error;
+        }
+
+        public ErrorResponse() {
+        }
+    }
+}
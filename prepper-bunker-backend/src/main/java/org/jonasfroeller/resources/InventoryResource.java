@@ -0,0 +1,108 @@
+package org.jonasfroeller.resources;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.InventoryTotalDTO;
+import org.jonasfroeller.repositories.*;
+import org.jonasfroeller.services.InventoryCounterService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Path("/inventory")
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
+@Consumes(MediaType.APPLICATION_JSON)
+public class InventoryResource {
+
+    @Inject
+    WeaponRepository weaponRepository;
+    @Inject
+    AmmunitionStockRepository ammunitionStockRepository;
+    @Inject
+    DrinkRepository drinkRepository;
+    @Inject
+    FoodRepository foodRepository;
+    @Inject
+    MedicationRepository medicationRepository;
+    @Inject
+    FuelRepository fuelRepository;
+    @Inject
+    BatteryRepository batteryRepository;
+    @Inject
+    GeneratorRepository generatorRepository;
+    @Inject
+    InventoryCounterService inventoryCounterService;
+
+    @GET
+    @Path("/totals")
+    @Operation(summary = "Get inventory totals of every resource type, grouped by type and/or storage location")
+    @APIResponse(responseCode = "200", description = "Total quantity and item count per resource type and group")
+    @APIResponse(responseCode = "400", description = "Invalid groupBy value")
+    public Response getInventoryTotals(@QueryParam("groupBy") String groupBy) {
+        boolean groupByType = false;
+        boolean groupByLocation = false;
+
+        if (groupBy != null && !groupBy.isBlank()) {
+            for (String group : groupBy.split(",")) {
+                switch (group.trim()) {
+                    case "type" -> groupByType = true;
+                    case "location" -> groupByLocation = true;
+                    default -> {
+                        return Response.status(Response.Status.BAD_REQUEST)
+                                .entity(new ErrorResponse("Invalid groupBy value: " + group.trim() +
+                                        ". Allowed values are: type, location."))
+                                .build();
+                    }
+                }
+            }
+        }
+
+        // One aggregate query per resource type
+        List<InventoryTotalDTO> totals = new ArrayList<>();
+        totals.addAll(weaponRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(ammunitionStockRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(drinkRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(foodRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(medicationRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(fuelRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(batteryRepository.getInventoryTotals(groupByType, groupByLocation));
+        totals.addAll(generatorRepository.getInventoryTotals(groupByType, groupByLocation));
+
+        return Response.ok(totals).build();
+    }
+
+    @POST
+    @Path("/counters/reconcile")
+    @Operation(summary = "Check the running totals of ammunition, fuel and batteries against their items now",
+            description = "Also runs periodically (bunker.inventory-counters.reconcile-every). Counters that drifted are repaired.")
+    @APIResponse(responseCode = "200", description = "Number of repaired counters")
+    public Response reconcileCounters() {
+        return Response.ok(new ReconcileResponse(inventoryCounterService.reconcile())).build();
+    }
+
+    public static class ErrorResponse {
+        public String error;
+
+        public ErrorResponse(String error) {
+            this.error = error;
+        }
+
+        public ErrorResponse() {
+        }
+    }
+
+    public static class ReconcileResponse {
+        public int repairedCounters;
+
+        public ReconcileResponse(int repairedCounters) {
+            this.repairedCounters = repairedCounters;
+        }
+
+        public ReconcileResponse() {
+        }
+    }
+}
@@ -10,17 +10,21 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.jonasfroeller.dtos.MedicationCreateDTO;
 import org.jonasfroeller.dtos.MedicationDTO;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.Medication;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.MedicationRepository;
 import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.services.ExpiryIndex;
 import org.jonasfroeller.services.NotificationService;
+import org.jonasfroeller.services.ResponseCache;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/medications")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class MedicationResource {
 
@@ -33,69 +37,81 @@ public class MedicationResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged({"Medication", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all medications")
     @APIResponse(responseCode = "200", description = "List of all medications")
-    public List<MedicationDTO> getAllMedications() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllMedications(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Medication", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get medication by ID")
     @APIResponse(responseCode = "200", description = "The medication with the given ID")
     @APIResponse(responseCode = "404", description = "Medication not found")
     public Response getMedicationById(@PathParam("id") Long id) {
-        Medication medication = repository.findById(id);
+        MedicationDTO medication = repository.findDTOById(id);
         if (medication == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Medication not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(medication)).build();
+        return Response.ok(medication).build();
     }
 
     @GET
+    @ETagged({"Medication", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get medications by storage location")
     @APIResponse(responseCode = "200", description = "List of medications at the specified location")
-    public List<MedicationDTO> getMedicationsByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getMedicationsByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.cached(page, "/medications/by-location/" + locationId, "Medication", locationId,
+                MedicationResource::cacheTags, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @GET
+    @ETagged({"Medication", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-purpose/{purpose}")
     @Operation(summary = "Get medications by purpose")
     @APIResponse(responseCode = "200", description = "List of medications for the specified purpose")
-    public List<MedicationDTO> getMedicationsByPurpose(@PathParam("purpose") String purpose) {
-        return repository.findByPurpose(purpose).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getMedicationsByPurpose(@PathParam("purpose") String purpose, @Valid @BeanParam PageRequest page) {
+        return pages.cached(page, "/medications/by-purpose/" + purpose, "Medication", null,
+                MedicationResource::cacheTags, () -> repository.findByPurpose(purpose, page));
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/expired")
     @Operation(summary = "Get expired medications")
     @APIResponse(responseCode = "200", description = "List of expired medications")
-    public List<MedicationDTO> getExpiredMedications() {
-        return repository.findExpiredItems().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getExpiredMedications(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findExpiredItems(page));
     }
 
     @GET
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/expiring-soon")
     @Operation(summary = "Get medications expiring within the next month")
     @APIResponse(responseCode = "200", description = "List of medications expiring soon")
-    public List<MedicationDTO> getMedicationsExpiringSoon() {
-        return repository.findItemsExpiringSoon().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getMedicationsExpiringSoon(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findItemsExpiringSoon(page));
     }
 
     @POST
@@ -120,10 +136,12 @@ public class MedicationResource {
 
         repository.persist(medication);
 
-        notificationService.notifyResourceCreated("Medication", medication.id, medication.name);
+        expiryIndex.changed(ExpiryIndex.MEDICATION, medication.id, medication.storageLocation.id, medication.name, medication.expirationDate);
+        MedicationDTO created = mapToDTO(medication);
+        notificationService.notifyResourceCreated("Medication", medication.id, medication.storageLocation.id, medication.name, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(medication))
+                .entity(created)
                 .build();
     }
 
@@ -157,9 +175,51 @@ public class MedicationResource {
 
         repository.persist(medication);
 
-        notificationService.notifyResourceUpdated("Medication", medication.id, medication.name);
+        expiryIndex.changed(ExpiryIndex.MEDICATION, medication.id, medication.storageLocation.id, medication.name, medication.expirationDate);
+        MedicationDTO updated = mapToDTO(medication);
+        notificationService.notifyResourceUpdated("Medication", medication.id, medication.storageLocation.id, medication.name, updated);
 
-        return Response.ok(mapToDTO(medication)).build();
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock a medication", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta, or the quantity would exceed 2147483647")
+    @APIResponse(responseCode = "404", description = "Medication not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustMedication(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        if (adjustment.delta % 1 != 0 || Math.abs(adjustment.delta) > Integer.MAX_VALUE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Delta must be a whole number, got: " + adjustment.delta))
+                    .build();
+        }
+
+        int delta = adjustment.delta.intValue();
+        if (!repository.adjustQuantity(id, delta)) {
+            MedicationDTO medication = repository.findDTOById(id);
+            if (medication == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Medication not found with ID: " + id))
+                        .build();
+            }
+            if ((long) medication.quantity + delta > Integer.MAX_VALUE) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ErrorResponse("Quantity would exceed " + Integer.MAX_VALUE + ", quantity is " + medication.quantity + " but delta is " + delta))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + medication.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        MedicationDTO medication = repository.findDTOById(id);
+
+        notificationService.notifyResourceUpdated("Medication", id, medication.storageLocationId, medication.name, medication);
+
+        return Response.ok(medication).build();
     }
 
     @DELETE
@@ -177,10 +237,12 @@ public class MedicationResource {
         }
 
         String medicationName = medication.name;
+        Long storageLocationId = medication.storageLocation == null ? null : medication.storageLocation.id;
 
         repository.delete(medication);
 
-        notificationService.notifyResourceDeleted("Medication", id, medicationName);
+        expiryIndex.deleted(ExpiryIndex.MEDICATION, id);
+        notificationService.notifyResourceDeleted("Medication", id, storageLocationId, medicationName);
 
         return Response.noContent().build();
     }
@@ -197,6 +259,11 @@ public class MedicationResource {
         );
     }
 
+    private static List<String> cacheTags(MedicationDTO medication) {
+        return List.of(ResponseCache.one("Medication", medication.id),
+                ResponseCache.one("StorageLocation", medication.storageLocationId));
+    }
+
     public static class ErrorResponse {
         public String error;
 
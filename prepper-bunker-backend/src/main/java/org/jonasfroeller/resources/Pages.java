@@ -0,0 +1,142 @@
+package org.jonasfroeller.resources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.services.ResponseCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Paged list responses keep a plain JSON array as body, paging metadata goes into headers.
+// Streamed requests are answered with NDJSON, written row by row while the query result is read.
+@ApplicationScoped
+public class Pages {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private static final int STREAM_TIMEOUT_SECONDS = 30 * 60;
+    private static final int FLUSH_EVERY_ROWS = 500;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    ResponseCache responseCache;
+
+    @Inject
+    BinaryFormats binaryFormats;
+
+    // For streamed requests the page is taken before the response starts, so an invalid sort or cursor still
+    // gets its 400, but its rows are only read while the response is written
+    public Response ok(PageRequest request, Supplier<Page<?>> query) {
+        Page<?> page = query.get();
+        if (!request.isStreamed()) {
+            return ok(page);
+        }
+
+        // The cursor stays open while the response is written, so it needs its own transaction
+        StreamingOutput output = outputStream -> QuarkusTransaction.requiringNew()
+                .timeout(STREAM_TIMEOUT_SECONDS)
+                .run(() -> writeNdjson(page, outputStream));
+
+        return Response.ok(output, PageRequest.APPLICATION_NDJSON).build();
+    }
+
+    // Like ok, but the serialized page is kept in the ResponseCache (streams are not). endpoint and the paging
+    // parameters make the key. Without a storageLocationId every change of resourceType drops the entry, with one
+    // only changes at that location and of the items it lists, which rowTags names (with the rows they show).
+    public <T> Response cached(PageRequest request, String endpoint, String resourceType, Long storageLocationId,
+                               Function<T, Collection<String>> rowTags, Supplier<Page<T>> query) {
+        if (request.isStreamed()) {
+            return ok(request, query::get);
+        }
+
+        // Kept once per format, a client on JSON and one on CBOR do not share entries
+        MediaType format = binaryFormats.preferred(request.accept);
+        ObjectMapper mapper = format == null ? objectMapper : binaryFormats.mapperFor(format);
+        if (format == null) {
+            format = MediaType.APPLICATION_JSON_TYPE;
+        }
+
+        String key = endpoint + "?limit=" + request.limit + "&after=" + request.after + "&sort=" + request.sort
+                + "&includeTotal=" + request.includeTotal + "&format=" + format.getSubtype();
+        ResponseCache.Entry entry = responseCache.get(key);
+        if (entry == null) {
+            long generation = responseCache.generation();
+            Page<T> page = query.get();
+
+            Set<String> tags = new HashSet<>();
+            // The total also changes when an item moves away, which is only announced with its new location
+            tags.add(storageLocationId == null || request.includeTotal
+                    ? ResponseCache.anyOf(resourceType)
+                    : ResponseCache.at(resourceType, storageLocationId));
+            for (T item : page.items) {
+                tags.addAll(rowTags.apply(item));
+            }
+
+            entry = new ResponseCache.Entry(key, serialize(mapper, page.items), page.nextCursor, page.total, tags);
+            responseCache.put(entry, generation);
+        }
+
+        return withPageHeaders(Response.ok(entry.body, format), entry.nextCursor, entry.total);
+    }
+
+    private Response ok(Page<?> page) {
+        return withPageHeaders(Response.ok(page.items), page.nextCursor, page.total);
+    }
+
+    private Response withPageHeaders(Response.ResponseBuilder response, String nextCursor, Long total) {
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        if (total != null) {
+            response.header(TOTAL_COUNT_HEADER, total);
+        }
+        return response.build();
+    }
+
+    private static byte[] serialize(ObjectMapper mapper, Object items) {
+        try {
+            return mapper.writeValueAsBytes(items);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeNdjson(Page<?> page, OutputStream outputStream) {
+        try (Stream<?> items = page.stream.get();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.setRootValueSeparator(null);
+
+            long rows = 0;
+            Iterator<?> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                objectMapper.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+
+                // Flush the first row right away, then in batches
+                if (rows++ % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.jonasfroeller.resources;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.SnapshotRestoreDTO;
+import org.jonasfroeller.services.BunkerNotEmptyException;
+import org.jonasfroeller.services.InvalidSnapshotException;
+import org.jonasfroeller.services.SnapshotService;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Path("/snapshot")
+@Produces(MediaType.APPLICATION_JSON)
+public class SnapshotResource {
+    static final String APPLICATION_GZIP = "application/gzip";
+
+    @Inject
+    SnapshotService snapshotService;
+
+    @GET
+    @Produces(APPLICATION_GZIP)
+    @Operation(summary = "Export the whole bunker as gzip-compressed NDJSON snapshot")
+    @APIResponse(responseCode = "200", description = "Snapshot of every table, streamed while it is read")
+    public Response exportSnapshot() {
+        StreamingOutput output = outputStream -> snapshotService.export(outputStream);
+
+        return Response.ok(output, APPLICATION_GZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"bunker-snapshot-" + LocalDate.now() + ".ndjson.gz\"")
+                .build();
+    }
+
+    @POST
+    @Path("/restore")
+    @Consumes(APPLICATION_GZIP)
+    @Operation(summary = "Restore a snapshot into an empty bunker",
+            description = "Rows keep their IDs. Nothing is restored if any row of the snapshot is rejected.")
+    @APIResponse(responseCode = "200", description = "Snapshot restored, row counts per table")
+    @APIResponse(responseCode = "400", description = "Invalid snapshot")
+    @APIResponse(responseCode = "409", description = "Bunker is not empty")
+    public Response restoreSnapshot(InputStream snapshot) {
+        Map<String, Long> restored;
+        try {
+            restored = snapshotService.restore(snapshot);
+        } catch (InvalidSnapshotException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+        } catch (BunkerNotEmptyException e) {
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse(e.getMessage()))
+                    .build();
+        }
+
+        long totalRows = restored.values().stream().mapToLong(Long::longValue).sum();
+        return Response.ok(new SnapshotRestoreDTO(restored, totalRows)).build();
+    }
+
+    public static class ErrorResponse {
+        public String error;
+
+        public ErrorResponse(String error) {
+            this.error = error;
+        }
+
+        public ErrorResponse() {
+        }
+    }
+}
@@ -8,17 +8,18 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.PageRequest;
 import org.jonasfroeller.dtos.StorageLocationDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.repositories.*;
 import org.jonasfroeller.services.NotificationService;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Path("/storage-locations")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class StorageLocationResource {
 
@@ -45,30 +46,34 @@ public class StorageLocationResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged("StorageLocation")
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all storage locations")
     @APIResponse(responseCode = "200", description = "List of all storage locations")
-    public List<StorageLocationDTO> getAllStorageLocations() {
-        return repository.findAll().stream()
-                .map(location -> new StorageLocationDTO(location.id, location.name, location.description))
-                .collect(Collectors.toList());
+    public Response getAllStorageLocations(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged("StorageLocation")
     @Path("/{id}")
     @Operation(summary = "Get storage location by ID")
     @APIResponse(responseCode = "200", description = "The storage location with the given ID")
     @APIResponse(responseCode = "404", description = "Storage location not found")
     public Response getStorageLocationById(@PathParam("id") Long id) {
-        StorageLocation location = repository.findById(id);
+        StorageLocationDTO location = repository.findDTOById(id);
         if (location == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Storage location not found with ID: " + id))
                     .build();
         }
 
-        StorageLocationDTO dto = new StorageLocationDTO(location.id, location.name, location.description);
-        return Response.ok(dto).build();
+        return Response.ok(location).build();
     }
 
     @POST
@@ -83,10 +88,11 @@ public class StorageLocationResource {
 
         repository.persist(location);
 
-        notificationService.notifyResourceCreated("StorageLocation", location.id, location.name);
+        StorageLocationDTO created = new StorageLocationDTO(location.id, location.name, location.description);
+        notificationService.notifyResourceCreated("StorageLocation", location.id, location.id, location.name, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(new StorageLocationDTO(location.id, location.name, location.description))
+                .entity(created)
                 .build();
     }
 
@@ -110,9 +116,10 @@ public class StorageLocationResource {
 
         repository.persist(location);
 
-        notificationService.notifyResourceUpdated("StorageLocation", location.id, location.name);
+        StorageLocationDTO updated = new StorageLocationDTO(location.id, location.name, location.description);
+        notificationService.notifyResourceUpdated("StorageLocation", location.id, location.id, location.name, updated);
 
-        return Response.ok(new StorageLocationDTO(location.id, location.name, location.description)).build();
+        return Response.ok(updated).build();
     }
 
     @DELETE
@@ -152,7 +159,7 @@ public class StorageLocationResource {
 
         repository.delete(location);
 
-        notificationService.notifyResourceDeleted("StorageLocation", id, locationName);
+        notificationService.notifyResourceDeleted("StorageLocation", id, id, locationName);
 
         return Response.noContent().build();
     }
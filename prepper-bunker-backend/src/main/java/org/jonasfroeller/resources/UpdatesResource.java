@@ -0,0 +1,65 @@
+package org.jonasfroeller.resources;
+
+import io.smallrye.mutiny.Multi;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.websocket.ResourceUpdateSocket;
+
+import java.util.List;
+
+// Delivery of the resource update notifications (WebSocket /ws/updates, server-sent events /updates/stream)
+@Path("/updates")
+@Produces(MediaType.APPLICATION_JSON)
+public class UpdatesResource {
+
+    @Inject
+    ResourceUpdateSocket resourceUpdateSocket;
+
+    @GET
+    @Path("/statistics")
+    @Operation(summary = "Get the connected sessions, their queue depths and the sent and dropped updates")
+    @APIResponse(responseCode = "200", description = "WebSocket statistics since startup")
+    public Response getStatistics() {
+        return Response.ok(resourceUpdateSocket.getStatistics()).build();
+    }
+
+    @GET
+    @Path("/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Operation(summary = "Stream the resource updates as server-sent events",
+            description = "One event per update, its ID is the sequence number. Reconnecting with Last-Event-ID sends the missed updates, "
+                    + "or a RESYNC event when they are no longer kept. Subscribers that fall too far behind are disconnected and resume the same way.")
+    @APIResponse(responseCode = "200", description = "Event stream of the matching updates")
+    public Multi<OutboundSseEvent> stream(@QueryParam("resourceType") List<String> resourceTypes,
+                                          @QueryParam("storageLocationId") Long storageLocationId,
+                                          @QueryParam("payload") String payload,
+                                          @HeaderParam("Last-Event-ID") Long lastEventId,
+                                          @Context Sse sse) {
+        boolean fullPayload = "full".equals(payload);
+        return resourceUpdateSocket.stream(resourceTypes, storageLocationId, lastEventId)
+                .map(message -> toEvent(sse, fullPayload || message.data == null ? message : message.withoutData()));
+    }
+
+    private OutboundSseEvent toEvent(Sse sse, ResourceUpdateMessage message) {
+        OutboundSseEvent.Builder event = sse.newEventBuilder()
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(ResourceUpdateMessage.class, message);
+        // Messages for this client only (RESYNC) have no sequence and must not move its Last-Event-ID
+        if (message.sequence != null) {
+            event.id(message.sequence.toString());
+        }
+        return event.build();
+    }
+}
@@ -8,8 +8,11 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.dtos.QuantityAdjustmentDTO;
 import org.jonasfroeller.dtos.WeaponCreateDTO;
 import org.jonasfroeller.dtos.WeaponDTO;
+import org.jonasfroeller.filters.ETagged;
 import org.jonasfroeller.models.AmmunitionType;
 import org.jonasfroeller.models.StorageLocation;
 import org.jonasfroeller.models.Weapon;
@@ -18,11 +21,8 @@ import org.jonasfroeller.repositories.StorageLocationRepository;
 import org.jonasfroeller.repositories.WeaponRepository;
 import org.jonasfroeller.services.NotificationService;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @Path("/weapons")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_CBOR, BinaryFormats.APPLICATION_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class WeaponResource {
 
@@ -38,39 +38,45 @@ public class WeaponResource {
     @Inject
     NotificationService notificationService;
 
+    @Inject
+    Pages pages;
+
     @GET
+    @ETagged({"Weapon", "AmmunitionType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Operation(summary = "Get all weapons")
     @APIResponse(responseCode = "200", description = "List of all weapons")
-    public List<WeaponDTO> getAllWeapons() {
-        return repository.findAll().stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getAllWeapons(@Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.listAllDTOs(page));
     }
 
     @GET
+    @ETagged({"Weapon", "AmmunitionType", "StorageLocation"})
     @Path("/{id}")
     @Operation(summary = "Get weapon by ID")
     @APIResponse(responseCode = "200", description = "The weapon with the given ID")
     @APIResponse(responseCode = "404", description = "Weapon not found")
     public Response getWeaponById(@PathParam("id") Long id) {
-        Weapon weapon = repository.findById(id);
+        WeaponDTO weapon = repository.findDTOById(id);
         if (weapon == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity(new ErrorResponse("Weapon not found with ID: " + id))
                     .build();
         }
 
-        return Response.ok(mapToDTO(weapon)).build();
+        return Response.ok(weapon).build();
     }
 
     @GET
+    @ETagged({"Weapon", "AmmunitionType", "StorageLocation"})
+    @Produces({MediaType.APPLICATION_JSON, PageRequest.APPLICATION_NDJSON, BinaryFormats.APPLICATION_CBOR,
+            BinaryFormats.APPLICATION_SMILE})
     @Path("/by-location/{locationId}")
     @Operation(summary = "Get weapons by storage location")
     @APIResponse(responseCode = "200", description = "List of weapons at the specified location")
-    public List<WeaponDTO> getWeaponsByLocation(@PathParam("locationId") Long locationId) {
-        return repository.findByStorageLocation(locationId).stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+    public Response getWeaponsByLocation(@PathParam("locationId") Long locationId, @Valid @BeanParam PageRequest page) {
+        return pages.ok(page, () -> repository.findByStorageLocation(locationId, page));
     }
 
     @POST
@@ -102,10 +108,11 @@ public class WeaponResource {
 
         repository.persist(weapon);
 
-        notificationService.notifyResourceCreated("Weapon", weapon.id, weapon.type + " " + weapon.model);
+        WeaponDTO created = mapToDTO(weapon);
+        notificationService.notifyResourceCreated("Weapon", weapon.id, weapon.storageLocation.id, weapon.type + " " + weapon.model, created);
 
         return Response.status(Response.Status.CREATED)
-                .entity(mapToDTO(weapon))
+                .entity(created)
                 .build();
     }
 
@@ -146,9 +153,50 @@ public class WeaponResource {
 
         repository.persist(weapon);
 
-        notificationService.notifyResourceUpdated("Weapon", weapon.id, weapon.type + " " + weapon.model);
+        WeaponDTO updated = mapToDTO(weapon);
+        notificationService.notifyResourceUpdated("Weapon", weapon.id, weapon.storageLocation.id, weapon.type + " " + weapon.model, updated);
+
+        return Response.ok(updated).build();
+    }
+
+    @POST
+    @Path("/{id}/adjust")
+    @Transactional
+    @Operation(summary = "Consume or restock a weapon", description = "Adds a signed delta to the quantity in a single atomic update")
+    @APIResponse(responseCode = "200", description = "Quantity adjusted")
+    @APIResponse(responseCode = "400", description = "Invalid delta, or the quantity would exceed 2147483647")
+    @APIResponse(responseCode = "404", description = "Weapon not found")
+    @APIResponse(responseCode = "409", description = "Quantity would drop below zero")
+    public Response adjustWeapon(@PathParam("id") Long id, @Valid QuantityAdjustmentDTO adjustment) {
+        if (adjustment.delta % 1 != 0 || Math.abs(adjustment.delta) > Integer.MAX_VALUE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(new ErrorResponse("Delta must be a whole number, got: " + adjustment.delta))
+                    .build();
+        }
+
+        int delta = adjustment.delta.intValue();
+        if (!repository.adjustQuantity(id, delta)) {
+            WeaponDTO weapon = repository.findDTOById(id);
+            if (weapon == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity(new ErrorResponse("Weapon not found with ID: " + id))
+                        .build();
+            }
+            if ((long) weapon.quantity + delta > Integer.MAX_VALUE) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new ErrorResponse("Quantity would exceed " + Integer.MAX_VALUE + ", quantity is " + weapon.quantity + " but delta is " + delta))
+                        .build();
+            }
+            return Response.status(Response.Status.CONFLICT)
+                    .entity(new ErrorResponse("Not enough in stock, quantity is " + weapon.quantity + " but delta is " + delta))
+                    .build();
+        }
+
+        WeaponDTO weapon = repository.findDTOById(id);
+
+        notificationService.notifyResourceUpdated("Weapon", id, weapon.storageLocationId, weapon.type + " " + weapon.model, weapon);
 
-        return Response.ok(mapToDTO(weapon)).build();
+        return Response.ok(weapon).build();
     }
 
     @DELETE
@@ -166,10 +214,11 @@ public class WeaponResource {
         }
 
         String weaponName = weapon.type + " " + weapon.model;
+        Long storageLocationId = weapon.storageLocation == null ? null : weapon.storageLocation.id;
 
         repository.delete(weapon);
 
-        notificationService.notifyResourceDeleted("Weapon", id, weaponName);
+        notificationService.notifyResourceDeleted("Weapon", id, storageLocationId, weaponName);
 
         return Response.noContent().build();
     }
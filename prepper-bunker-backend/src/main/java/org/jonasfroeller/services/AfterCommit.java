@@ -0,0 +1,62 @@
+package org.jonasfroeller.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs actions once the current transaction has committed, for in-memory state
+// that must only ever reflect changes which actually made it into the database
+@ApplicationScoped
+public class AfterCommit {
+
+    private static final Logger LOG = Logger.getLogger(AfterCommit.class);
+    private static final Object ACTIONS_KEY = AfterCommit.class;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    // The action is dropped if the transaction rolls back. Without an active transaction (e.g. when called from
+    // another after-commit action or a scheduler) there is nothing to wait for, so it runs right away.
+    // Actions of one transaction run in the order they were registered.
+    public void run(Runnable action) {
+        int status = transactionRegistry.getTransactionStatus();
+        if (status != Status.STATUS_ACTIVE && status != Status.STATUS_MARKED_ROLLBACK) {
+            action.run();
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Runnable> actions = (List<Runnable>) transactionRegistry.getResource(ACTIONS_KEY);
+        if (actions == null) {
+            List<Runnable> registered = new ArrayList<>();
+            transactionRegistry.putResource(ACTIONS_KEY, registered);
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        // The data is committed either way, one failing action must not cost the others
+                        for (Runnable registeredAction : registered) {
+                            try {
+                                registeredAction.run();
+                            } catch (RuntimeException e) {
+                                LOG.error("After-commit action failed", e);
+                            }
+                        }
+                    }
+                }
+            });
+            actions = registered;
+        }
+        actions.add(action);
+    }
+}
@@ -0,0 +1,8 @@
+package org.jonasfroeller.services;
+
+// A snapshot restore found rows in the bunker, nothing has been restored
+public class BunkerNotEmptyException extends RuntimeException {
+    public BunkerNotEmptyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,298 @@
+package org.jonasfroeller.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jonasfroeller.dtos.DrinkDTO;
+import org.jonasfroeller.dtos.FoodDTO;
+import org.jonasfroeller.dtos.MedicationDTO;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.repositories.DrinkRepository;
+import org.jonasfroeller.repositories.FoodRepository;
+import org.jonasfroeller.repositories.MedicationRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+// Expiration dates of all food, drinks and medications in memory, ordered by the date their state changes next
+// (fresh -> expiring soon -> expired). Mutation paths report their changes after commit, and a tick shortly after
+// midnight moves every item whose date has come, so EXPIRING/EXPIRED notifications go out without querying the database.
+// Expiring soon and expired use the same dates as the repositories' findItemsExpiringSoon/findExpiredItems:
+// an item expiring today is expiring soon, it is expired from the next day on.
+@ApplicationScoped
+public class ExpiryIndex {
+    public static final String FOOD = "Food";
+    public static final String DRINK = "Drink";
+    public static final String MEDICATION = "Medication";
+
+    private static final Comparator<Entry> BY_NEXT_CHANGE = Comparator
+            .comparing((Entry entry) -> entry.nextChange)
+            .thenComparing(entry -> entry.resourceType)
+            .thenComparingLong(entry -> entry.id);
+
+    @Inject
+    FoodRepository foodRepository;
+
+    @Inject
+    DrinkRepository drinkRepository;
+
+    @Inject
+    MedicationRepository medicationRepository;
+
+    @Inject
+    NotificationService notificationService;
+
+    @Inject
+    AfterCommit afterCommit;
+
+    @Inject
+    UpdateBus bus;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    // Guarded by this: items by "resourceType\nid", and the ones that still change state by the date they do
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> byNextChange = new TreeSet<>(BY_NEXT_CHANGE);
+    private LocalDate today = LocalDate.now();
+
+    enum State {
+        FRESH, EXPIRING, EXPIRED
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        reload();
+    }
+
+    // Rebuilds the index from the database without notifying, e.g. after a snapshot restore
+    public void reload() {
+        Map<String, Entry> loaded = new HashMap<>();
+        LocalDate now = LocalDate.now();
+        QuarkusTransaction.requiringNew().run(() -> {
+            load(loaded, FOOD, foodRepository.streamExpirationDates(), now);
+            load(loaded, DRINK, drinkRepository.streamExpirationDates(), now);
+            load(loaded, MEDICATION, medicationRepository.streamExpirationDates(), now);
+        });
+
+        synchronized (this) {
+            today = now;
+            entries.clear();
+            entries.putAll(loaded);
+            byNextChange.clear();
+            loaded.values().stream().filter(entry -> entry.nextChange != null).forEach(byNextChange::add);
+        }
+    }
+
+    // Reports a created or updated item once the current transaction commits.
+    // An item that is already expiring or expired (or gets there through the update) is notified right away.
+    public void changed(String resourceType, Long id, Long storageLocationId, String label, LocalDate expirationDate) {
+        afterCommit.run(() -> announce(put(resourceType, id, storageLocationId, label, expirationDate)));
+    }
+
+    // Reports a deleted item once the current transaction commits
+    public void deleted(String resourceType, Long id) {
+        afterCommit.run(() -> remove(resourceType, id));
+    }
+
+    // A change another instance committed (announced on the UpdateBus), that instance has already notified about it.
+    // Messages without the items (imports, restores, batches too large for the bus) make the index reload instead.
+    public void applyRemote(ResourceUpdateMessage message) {
+        Class<?> dtoType = switch (String.valueOf(message.resourceType)) {
+            case FOOD -> FoodDTO.class;
+            case DRINK -> DrinkDTO.class;
+            case MEDICATION -> MedicationDTO.class;
+            default -> null;
+        };
+        if (dtoType == null) {
+            return;
+        }
+
+        switch (String.valueOf(message.action)) {
+            case "DELETE" -> {
+                if (message.resourceId != null) {
+                    remove(message.resourceType, message.resourceId);
+                } else {
+                    reload();
+                }
+            }
+            case "CREATE", "UPDATE" -> {
+                if (message.data == null) {
+                    reload();
+                    return;
+                }
+                List<?> items = message.data instanceof List<?> list ? list : List.of(message.data);
+                for (Object item : items) {
+                    Object dto = objectMapper.convertValue(item, dtoType);
+                    if (dto instanceof FoodDTO food) {
+                        put(FOOD, food.id, food.storageLocationId, food.type, food.expirationDate);
+                    } else if (dto instanceof DrinkDTO drink) {
+                        put(DRINK, drink.id, drink.storageLocationId, drink.type, drink.expirationDate);
+                    } else if (dto instanceof MedicationDTO medication) {
+                        put(MEDICATION, medication.id, medication.storageLocationId, medication.name, medication.expirationDate);
+                    }
+                }
+            }
+            default -> {
+                // EXPIRING and EXPIRED change nothing, every instance moves its items at its own tick
+            }
+        }
+    }
+
+    // Every instance moves its own items, but only one of them notifies (its notifications reach the clients of all)
+    @Scheduled(cron = "{bunker.expiry.check-cron}")
+    void tick() {
+        List<Entry> changed = advance(LocalDate.now());
+        if (bus.sendsScheduledNotifications()) {
+            announce(changed);
+        }
+    }
+
+    // State of an item in the index, null if it has none
+    synchronized State state(String resourceType, Long id) {
+        Entry entry = entries.get(key(resourceType, id));
+        return entry == null ? null : entry.state;
+    }
+
+    // Moves every item whose state changes by the given day, returns the items that changed
+    synchronized List<Entry> advance(LocalDate day) {
+        today = day;
+        List<Entry> changed = new ArrayList<>();
+        while (!byNextChange.isEmpty() && !byNextChange.first().nextChange.isAfter(day)) {
+            Entry entry = byNextChange.pollFirst();
+            State before = entry.state;
+            entry.update(day);
+            if (entry.nextChange != null) {
+                byNextChange.add(entry);
+            }
+            if (entry.state != before) {
+                changed.add(entry.copy());
+            }
+        }
+        return changed;
+    }
+
+    private synchronized List<Entry> put(String resourceType, Long id, Long storageLocationId, String label, LocalDate expirationDate) {
+        Entry previous = remove(resourceType, id);
+        if (expirationDate == null) {
+            return List.of();
+        }
+
+        Entry entry = new Entry(resourceType, id, storageLocationId, label, expirationDate, today);
+        entries.put(key(resourceType, id), entry);
+        if (entry.nextChange != null) {
+            byNextChange.add(entry);
+        }
+
+        State before = previous == null ? State.FRESH : previous.state;
+        return entry.state != before && entry.state != State.FRESH ? List.of(entry.copy()) : List.of();
+    }
+
+    private synchronized Entry remove(String resourceType, Long id) {
+        Entry entry = entries.remove(key(resourceType, id));
+        if (entry != null && entry.nextChange != null) {
+            byNextChange.remove(entry);
+        }
+        return entry;
+    }
+
+    // Called without holding the lock, the WebSocket broadcast may be slow
+    private void announce(List<Entry> changed) {
+        for (Entry entry : changed) {
+            String details = entry.label + " (expiration date: " + entry.expirationDate + ")";
+            if (entry.state == State.EXPIRED) {
+                notificationService.notifyItemExpired(entry.resourceType, entry.id, entry.storageLocationId, details);
+            } else if (entry.state == State.EXPIRING) {
+                notificationService.notifyItemExpiring(entry.resourceType, entry.id, entry.storageLocationId, details);
+            }
+        }
+    }
+
+    private static void load(Map<String, Entry> loaded, String resourceType, Stream<Object[]> rows, LocalDate today) {
+        try (rows) {
+            rows.forEach(row -> {
+                Long id = (Long) row[0];
+                loaded.put(key(resourceType, id), new Entry(resourceType, id, (Long) row[1], (String) row[2],
+                        (LocalDate) row[3], today));
+            });
+        }
+    }
+
+    private static String key(String resourceType, Long id) {
+        return resourceType + "\n" + id;
+    }
+
+    static class Entry {
+        final String resourceType;
+        final long id;
+        final Long storageLocationId;
+        final String label;
+        final LocalDate expirationDate;
+        // First day on which the item is expiring soon
+        final LocalDate expiringFrom;
+        State state;
+        // null once the item is expired
+        LocalDate nextChange;
+
+        Entry(String resourceType, long id, Long storageLocationId, String label, LocalDate expirationDate, LocalDate today) {
+            this.resourceType = resourceType;
+            this.id = id;
+            this.storageLocationId = storageLocationId;
+            this.label = label;
+            this.expirationDate = expirationDate;
+            this.expiringFrom = expiringFrom(expirationDate);
+            update(today);
+        }
+
+        private Entry(Entry entry) {
+            this.resourceType = entry.resourceType;
+            this.id = entry.id;
+            this.storageLocationId = entry.storageLocationId;
+            this.label = entry.label;
+            this.expirationDate = entry.expirationDate;
+            this.expiringFrom = entry.expiringFrom;
+            this.state = entry.state;
+            this.nextChange = entry.nextChange;
+        }
+
+        // Snapshot to notify about after the lock is released
+        Entry copy() {
+            return new Entry(this);
+        }
+
+        void update(LocalDate today) {
+            if (expirationDate.isBefore(today)) {
+                state = State.EXPIRED;
+                nextChange = null;
+            } else if (today.isBefore(expiringFrom)) {
+                state = State.FRESH;
+                nextChange = expiringFrom;
+            } else {
+                state = State.EXPIRING;
+                nextChange = expirationDate.plusDays(1);
+            }
+        }
+
+        // Expiring soon means expiring within a month: the first day whose "one month from now" lies after the expiration date.
+        // Months differ in length, so the day is searched from one month before the expiration date.
+        private static LocalDate expiringFrom(LocalDate expirationDate) {
+            LocalDate day = expirationDate.minusMonths(1);
+            while (!day.plusMonths(1).isAfter(expirationDate)) {
+                day = day.plusDays(1);
+            }
+            while (day.minusDays(1).plusMonths(1).isAfter(expirationDate)) {
+                day = day.minusDays(1);
+            }
+            return day;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.jonasfroeller.services;
+
+import org.jonasfroeller.dtos.PageRequest;
+
+public enum ImportFormat {
+    NDJSON(PageRequest.APPLICATION_NDJSON),
+    CSV("text/csv");
+
+    public final String mediaType;
+
+    ImportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    // null if the content type is not supported
+    public static ImportFormat fromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+
+        String mediaType = contentType.split(";", 2)[0].trim();
+        for (ImportFormat format : values()) {
+            if (format.mediaType.equalsIgnoreCase(mediaType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,127 @@
+package org.jonasfroeller.services;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress of one import, updated by the import worker and read by status requests
+public class ImportJob {
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String resourceType;
+    private final ImportFormat format;
+    private final int chunkSize;
+    private final Path errorFile;
+    private final Instant createdAt = Instant.now();
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong chunksCommitted = new AtomicLong();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    public ImportJob(String id, String resourceType, ImportFormat format, int chunkSize, Path errorFile) {
+        this.id = id;
+        this.resourceType = resourceType;
+        this.format = format;
+        this.chunkSize = chunkSize;
+        this.errorFile = errorFile;
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void rowFailed() {
+        rowsFailed.incrementAndGet();
+    }
+
+    void chunkCommitted(int imported, int failed) {
+        rowsImported.addAndGet(imported);
+        rowsFailed.addAndGet(failed);
+        chunksCommitted.incrementAndGet();
+    }
+
+    void completed() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public ImportFormat getFormat() {
+        return format;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public Path getErrorFile() {
+        return errorFile;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsImported() {
+        return rowsImported.get();
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    public long getChunksCommitted() {
+        return chunksCommitted.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+}
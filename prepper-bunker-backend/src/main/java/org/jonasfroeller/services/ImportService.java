@@ -0,0 +1,367 @@
+package org.jonasfroeller.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.jonasfroeller.dtos.ImportErrorDTO;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+// Bulk imports: the upload is spooled to a temp file, then read row by row by a background worker
+// and committed in chunks of chunkSize rows, each in its own transaction. Rejected rows are written
+// to a per-job NDJSON error file, so neither the rows nor the errors are ever held in memory.
+@ApplicationScoped
+public class ImportService {
+    private static final Logger LOG = Logger.getLogger(ImportService.class);
+
+    @Inject
+    ImportTargets importTargets;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    Validator validator;
+
+    @Inject
+    NotificationService notificationService;
+
+    @Inject
+    TableVersions tableVersions;
+
+    @Inject
+    ResponseCache responseCache;
+
+    @ConfigProperty(name = "bunker.import.chunk-size", defaultValue = "500")
+    int defaultChunkSize;
+
+    @ConfigProperty(name = "bunker.import.retained-jobs", defaultValue = "20")
+    int retainedJobs;
+
+    private final CsvMapper csvMapper = new CsvMapper();
+    private ExecutorService worker;
+    private Map<String, ImportJob> jobs;
+
+    @PostConstruct
+    void init() {
+        // Imports run one after another, parallel imports would only compete for the same tables
+        worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bunker-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Finished jobs are forgotten (and their error files deleted) once there are too many
+        jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) {
+                if (size() <= retainedJobs || !eldest.getValue().isFinished()) {
+                    return false;
+                }
+                deleteQuietly(eldest.getValue().getErrorFile());
+                return true;
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public boolean supports(String resourceType) {
+        return importTargets.get(resourceType) != null;
+    }
+
+    public Set<String> resourceTypes() {
+        return importTargets.names();
+    }
+
+    public int defaultChunkSize() {
+        return defaultChunkSize;
+    }
+
+    // Spools the upload to disk and queues the import, returns once the upload has been received
+    public ImportJob start(String resourceType, ImportFormat format, InputStream upload, int chunkSize) throws IOException {
+        ImportTarget<?> target = importTargets.get(resourceType);
+        if (target == null) {
+            throw new IllegalArgumentException("Unknown resource type: " + resourceType);
+        }
+
+        Path uploadFile = Files.createTempFile("bunker-import-", "." + format.name().toLowerCase());
+        Path errorFile;
+        try {
+            Files.copy(upload, uploadFile, StandardCopyOption.REPLACE_EXISTING);
+            errorFile = Files.createTempFile("bunker-import-", "-errors.ndjson");
+        } catch (IOException e) {
+            deleteQuietly(uploadFile);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), resourceType, format, chunkSize, errorFile);
+        jobs.put(job.getId(), job);
+        worker.submit(() -> run(job, target, uploadFile));
+        return job;
+    }
+
+    // null if the job is unknown or has already been forgotten
+    public ImportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    private <D> void run(ImportJob job, ImportTarget<D> target, Path uploadFile) {
+        job.started();
+        try (RowReader<D> reader = openReader(job.getFormat(), uploadFile, target.dtoClass());
+             BufferedWriter errorWriter = Files.newBufferedWriter(job.getErrorFile(), StandardCharsets.UTF_8)) {
+            List<D> chunk = new ArrayList<>(job.getChunkSize());
+            List<Long> chunkRows = new ArrayList<>(job.getChunkSize());
+
+            while (reader.next()) {
+                job.rowRead();
+                String error;
+                D row = null;
+                try {
+                    row = reader.value();
+                    error = row == null ? "Row cannot be empty" : validate(row);
+                } catch (IOException | IllegalArgumentException e) {
+                    error = describe(e);
+                }
+
+                if (error != null) {
+                    job.rowFailed();
+                    writeError(errorWriter, reader.row(), error);
+                    continue;
+                }
+
+                chunk.add(row);
+                chunkRows.add(reader.row());
+                if (chunk.size() == job.getChunkSize()) {
+                    commitChunk(job, target, chunk, chunkRows, errorWriter);
+                    chunk.clear();
+                    chunkRows.clear();
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                commitChunk(job, target, chunk, chunkRows, errorWriter);
+            }
+            job.completed();
+        } catch (Exception e) {
+            // Rows of chunks committed so far stay imported
+            LOG.errorf(e, "Import %s of %s failed", job.getId(), job.getResourceType());
+            job.failed(describe(e));
+        } finally {
+            deleteQuietly(uploadFile);
+        }
+
+        if (job.getRowsImported() > 0) {
+            notificationService.notifyResourcesCreated(target.resourceType(), (int) job.getRowsImported());
+        }
+    }
+
+    private <D> void commitChunk(ImportJob job, ImportTarget<D> target, List<D> chunk, List<Long> chunkRows,
+                                 BufferedWriter errorWriter) throws IOException {
+        Map<Integer, String> errors = new TreeMap<>();
+        try {
+            QuarkusTransaction.requiringNew().run(() -> target.writer().write(chunk, errors));
+            // Readers see every committed chunk, the notification only follows at the end of the import
+            tableVersions.changed(target.resourceType());
+            responseCache.invalidate(target.resourceType());
+        } catch (RuntimeException e) {
+            // The whole chunk was rolled back, so every row of it failed
+            String error = "Chunk rolled back: " + describe(e);
+            errors.clear();
+            for (int i = 0; i < chunk.size(); i++) {
+                errors.put(i, error);
+            }
+        }
+
+        for (Map.Entry<Integer, String> error : errors.entrySet()) {
+            writeError(errorWriter, chunkRows.get(error.getKey()), error.getValue());
+        }
+        errorWriter.flush();
+        job.chunkCommitted(chunk.size() - errors.size(), errors.size());
+    }
+
+    private <D> String validate(D row) {
+        Set<ConstraintViolation<D>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private void writeError(BufferedWriter errorWriter, long row, String error) throws IOException {
+        errorWriter.write(objectMapper.writeValueAsString(new ImportErrorDTO(row, error)));
+        errorWriter.newLine();
+    }
+
+    private <D> RowReader<D> openReader(ImportFormat format, Path uploadFile, Class<D> dtoClass) throws IOException {
+        BufferedReader input = Files.newBufferedReader(uploadFile, StandardCharsets.UTF_8);
+        try {
+            return switch (format) {
+                case NDJSON -> new NdjsonRowReader<>(input, objectMapper, dtoClass);
+                case CSV -> new CsvRowReader<>(input, csvMapper, objectMapper, dtoClass);
+            };
+        } catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    private static String describe(Exception e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && !(cause instanceof JsonProcessingException)) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof JsonProcessingException json) {
+            return json.getOriginalMessage();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warnf(e, "Could not delete %s", file);
+        }
+    }
+
+    // Reads an upload one row at a time
+    private interface RowReader<D> extends Closeable {
+        // false at the end of the upload
+        boolean next() throws IOException;
+
+        // 1-based number of the current row
+        long row();
+
+        // the current row as DTO, throws if it is malformed
+        D value() throws IOException;
+    }
+
+    // One JSON object per line, blank lines are skipped
+    private static class NdjsonRowReader<D> implements RowReader<D> {
+        private final BufferedReader input;
+        private final ObjectMapper objectMapper;
+        private final Class<D> dtoClass;
+        private long row;
+        private String line;
+
+        NdjsonRowReader(BufferedReader input, ObjectMapper objectMapper, Class<D> dtoClass) {
+            this.input = input;
+            this.objectMapper = objectMapper;
+            this.dtoClass = dtoClass;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            do {
+                line = input.readLine();
+            } while (line != null && line.isBlank());
+
+            if (line == null) {
+                return false;
+            }
+            row++;
+            return true;
+        }
+
+        @Override
+        public long row() {
+            return row;
+        }
+
+        @Override
+        public D value() throws IOException {
+            return objectMapper.readValue(line, dtoClass);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    // First line is the header with the DTO field names, empty cells are treated as missing values
+    private static class CsvRowReader<D> implements RowReader<D> {
+        private final MappingIterator<Map<String, String>> rows;
+        private final ObjectMapper objectMapper;
+        private final Class<D> dtoClass;
+        private long row;
+        private Map<String, String> current;
+
+        CsvRowReader(BufferedReader input, CsvMapper csvMapper, ObjectMapper objectMapper, Class<D> dtoClass) throws IOException {
+            this.rows = csvMapper.readerForMapOf(String.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .readValues(input);
+            this.objectMapper = objectMapper;
+            this.dtoClass = dtoClass;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            try {
+                if (!rows.hasNextValue()) {
+                    return false;
+                }
+                current = rows.nextValue();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            row++;
+            return true;
+        }
+
+        @Override
+        public long row() {
+            return row;
+        }
+
+        @Override
+        public D value() {
+            Map<String, String> values = new LinkedHashMap<>(current);
+            values.values().removeIf(value -> value == null || value.isEmpty());
+            return objectMapper.convertValue(values, dtoClass);
+        }
+
+        @Override
+        public void close() throws IOException {
+            rows.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.jonasfroeller.services;
+
+import java.util.List;
+import java.util.Map;
+
+// How rows of one resource type are imported: the CreateDTO a row is read and validated as,
+// and how a chunk of valid rows is written (called inside the chunk's transaction).
+public class ImportTarget<D> {
+    private final String resourceType;
+    private final Class<D> dtoClass;
+    private final ChunkWriter<D> writer;
+
+    public ImportTarget(String resourceType, Class<D> dtoClass, ChunkWriter<D> writer) {
+        this.resourceType = resourceType;
+        this.dtoClass = dtoClass;
+        this.writer = writer;
+    }
+
+    public String resourceType() {
+        return resourceType;
+    }
+
+    public Class<D> dtoClass() {
+        return dtoClass;
+    }
+
+    public ChunkWriter<D> writer() {
+        return writer;
+    }
+
+    public interface ChunkWriter<D> {
+        // Rows that cannot be written (e.g. unknown foreign keys) are put into errors by their index in rows
+        void write(List<D> rows, Map<Integer, String> errors);
+    }
+}
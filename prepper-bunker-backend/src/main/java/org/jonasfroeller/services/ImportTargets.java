@@ -0,0 +1,302 @@
+package org.jonasfroeller.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jonasfroeller.dtos.AmmunitionStockCreateDTO;
+import org.jonasfroeller.dtos.AmmunitionTypeDTO;
+import org.jonasfroeller.dtos.BatteryCreateDTO;
+import org.jonasfroeller.dtos.DrinkCreateDTO;
+import org.jonasfroeller.dtos.FoodCreateDTO;
+import org.jonasfroeller.dtos.FuelCreateDTO;
+import org.jonasfroeller.dtos.FuelTypeCreateDTO;
+import org.jonasfroeller.dtos.GeneratorCreateDTO;
+import org.jonasfroeller.dtos.MedicationCreateDTO;
+import org.jonasfroeller.dtos.StorageLocationDTO;
+import org.jonasfroeller.dtos.WeaponCreateDTO;
+import org.jonasfroeller.models.AmmunitionStock;
+import org.jonasfroeller.models.AmmunitionType;
+import org.jonasfroeller.models.Battery;
+import org.jonasfroeller.models.Drink;
+import org.jonasfroeller.models.Food;
+import org.jonasfroeller.models.Fuel;
+import org.jonasfroeller.models.FuelType;
+import org.jonasfroeller.models.Generator;
+import org.jonasfroeller.models.Medication;
+import org.jonasfroeller.models.StorageLocation;
+import org.jonasfroeller.models.Weapon;
+import org.jonasfroeller.repositories.AmmunitionStockRepository;
+import org.jonasfroeller.repositories.AmmunitionTypeRepository;
+import org.jonasfroeller.repositories.BatteryRepository;
+import org.jonasfroeller.repositories.DrinkRepository;
+import org.jonasfroeller.repositories.FoodRepository;
+import org.jonasfroeller.repositories.FuelRepository;
+import org.jonasfroeller.repositories.FuelTypeRepository;
+import org.jonasfroeller.repositories.GeneratorRepository;
+import org.jonasfroeller.repositories.MedicationRepository;
+import org.jonasfroeller.repositories.StorageLocationRepository;
+import org.jonasfroeller.repositories.WeaponRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+// Import targets by the REST path of the resource type, e.g. "food" or "ammunition-stocks".
+// Foreign keys of a chunk are resolved with one IN query per referenced type.
+@ApplicationScoped
+public class ImportTargets {
+
+    @Inject
+    StorageLocationRepository storageLocationRepository;
+
+    @Inject
+    FuelTypeRepository fuelTypeRepository;
+
+    @Inject
+    AmmunitionTypeRepository ammunitionTypeRepository;
+
+    @Inject
+    WeaponRepository weaponRepository;
+
+    @Inject
+    AmmunitionStockRepository ammunitionStockRepository;
+
+    @Inject
+    FoodRepository foodRepository;
+
+    @Inject
+    DrinkRepository drinkRepository;
+
+    @Inject
+    MedicationRepository medicationRepository;
+
+    @Inject
+    FuelRepository fuelRepository;
+
+    @Inject
+    BatteryRepository batteryRepository;
+
+    @Inject
+    GeneratorRepository generatorRepository;
+
+    @Inject
+    InventoryCounterService inventoryCounters;
+
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    private final Map<String, ImportTarget<?>> targets = new TreeMap<>();
+
+    @PostConstruct
+    void registerTargets() {
+        targets.put("storage-locations", new ImportTarget<>("StorageLocation", StorageLocationDTO.class, (rows, errors) -> {
+            for (StorageLocationDTO dto : rows) {
+                StorageLocation location = new StorageLocation();
+                location.name = dto.name;
+                location.description = dto.description;
+                storageLocationRepository.persist(location);
+            }
+        }));
+
+        targets.put("fuel-types", new ImportTarget<>("FuelType", FuelTypeCreateDTO.class, (rows, errors) -> {
+            for (FuelTypeCreateDTO dto : rows) {
+                FuelType fuelType = new FuelType();
+                fuelType.name = dto.name;
+                fuelTypeRepository.persist(fuelType);
+            }
+        }));
+
+        targets.put("ammunition-types", new ImportTarget<>("AmmunitionType", AmmunitionTypeDTO.class, (rows, errors) -> {
+            for (AmmunitionTypeDTO dto : rows) {
+                AmmunitionType type = new AmmunitionType();
+                type.caliber = dto.caliber;
+                type.type = dto.type;
+                ammunitionTypeRepository.persist(type);
+            }
+        }));
+
+        targets.put("weapons", new ImportTarget<>("Weapon", WeaponCreateDTO.class, (rows, errors) -> {
+            Map<Long, AmmunitionType> ammunitionTypes = ammunitionTypeRepository.findByIds(ids(rows, dto -> dto.ammunitionTypeId));
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            for (int i = 0; i < rows.size(); i++) {
+                WeaponCreateDTO dto = rows.get(i);
+                if (!ammunitionTypes.containsKey(dto.ammunitionTypeId)) {
+                    errors.put(i, "Ammunition type not found with ID: " + dto.ammunitionTypeId);
+                } else if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Weapon weapon = new Weapon();
+                    weapon.type = dto.type;
+                    weapon.model = dto.model;
+                    weapon.quantity = dto.quantity;
+                    weapon.ammunitionType = ammunitionTypes.get(dto.ammunitionTypeId);
+                    weapon.storageLocation = locations.get(dto.storageLocationId);
+                    weaponRepository.persist(weapon);
+                }
+            }
+        }));
+
+        targets.put("ammunition-stocks", new ImportTarget<>("AmmunitionStock", AmmunitionStockCreateDTO.class, (rows, errors) -> {
+            Map<Long, AmmunitionType> ammunitionTypes = ammunitionTypeRepository.findByIds(ids(rows, dto -> dto.ammunitionTypeId));
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            InventoryCounterService.Changes counterChanges = new InventoryCounterService.Changes();
+            for (int i = 0; i < rows.size(); i++) {
+                AmmunitionStockCreateDTO dto = rows.get(i);
+                if (!ammunitionTypes.containsKey(dto.ammunitionTypeId)) {
+                    errors.put(i, "Ammunition type not found with ID: " + dto.ammunitionTypeId);
+                } else if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    AmmunitionStock stock = new AmmunitionStock();
+                    stock.quantity = dto.quantity;
+                    stock.ammunitionType = ammunitionTypes.get(dto.ammunitionTypeId);
+                    stock.storageLocation = locations.get(dto.storageLocationId);
+                    ammunitionStockRepository.persist(stock);
+                    counterChanges.created(InventoryCounterService.counted(stock));
+                }
+            }
+            inventoryCounters.apply(counterChanges);
+        }));
+
+        targets.put("food", new ImportTarget<>("Food", FoodCreateDTO.class, (rows, errors) -> {
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            for (int i = 0; i < rows.size(); i++) {
+                FoodCreateDTO dto = rows.get(i);
+                if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Food food = new Food();
+                    food.type = dto.type;
+                    food.quantity = dto.quantity;
+                    food.expirationDate = dto.expirationDate;
+                    food.storageLocation = locations.get(dto.storageLocationId);
+                    foodRepository.persist(food);
+                    expiryIndex.changed(ExpiryIndex.FOOD, food.id, food.storageLocation.id, food.type, food.expirationDate);
+                }
+            }
+        }));
+
+        targets.put("drinks", new ImportTarget<>("Drink", DrinkCreateDTO.class, (rows, errors) -> {
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            for (int i = 0; i < rows.size(); i++) {
+                DrinkCreateDTO dto = rows.get(i);
+                if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Drink drink = new Drink();
+                    drink.type = dto.type;
+                    drink.quantity = dto.quantity;
+                    drink.expirationDate = dto.expirationDate;
+                    drink.storageLocation = locations.get(dto.storageLocationId);
+                    drinkRepository.persist(drink);
+                    expiryIndex.changed(ExpiryIndex.DRINK, drink.id, drink.storageLocation.id, drink.type, drink.expirationDate);
+                }
+            }
+        }));
+
+        targets.put("medications", new ImportTarget<>("Medication", MedicationCreateDTO.class, (rows, errors) -> {
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            for (int i = 0; i < rows.size(); i++) {
+                MedicationCreateDTO dto = rows.get(i);
+                if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Medication medication = new Medication();
+                    medication.name = dto.name;
+                    medication.quantity = dto.quantity;
+                    medication.expirationDate = dto.expirationDate;
+                    medication.purpose = dto.purpose;
+                    medication.storageLocation = locations.get(dto.storageLocationId);
+                    medicationRepository.persist(medication);
+                    expiryIndex.changed(ExpiryIndex.MEDICATION, medication.id, medication.storageLocation.id, medication.name, medication.expirationDate);
+                }
+            }
+        }));
+
+        targets.put("fuel", new ImportTarget<>("Fuel", FuelCreateDTO.class, (rows, errors) -> {
+            Map<Long, FuelType> fuelTypes = fuelTypeRepository.findByIds(ids(rows, dto -> dto.fuelTypeId));
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            InventoryCounterService.Changes counterChanges = new InventoryCounterService.Changes();
+            for (int i = 0; i < rows.size(); i++) {
+                FuelCreateDTO dto = rows.get(i);
+                if (!fuelTypes.containsKey(dto.fuelTypeId)) {
+                    errors.put(i, fuelTypeNotFound(dto.fuelTypeId));
+                } else if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Fuel fuel = new Fuel();
+                    fuel.quantity = dto.quantity;
+                    fuel.fuelType = fuelTypes.get(dto.fuelTypeId);
+                    fuel.storageLocation = locations.get(dto.storageLocationId);
+                    fuelRepository.persist(fuel);
+                    counterChanges.created(InventoryCounterService.counted(fuel));
+                }
+            }
+            inventoryCounters.apply(counterChanges);
+        }));
+
+        targets.put("batteries", new ImportTarget<>("Battery", BatteryCreateDTO.class, (rows, errors) -> {
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            InventoryCounterService.Changes counterChanges = new InventoryCounterService.Changes();
+            for (int i = 0; i < rows.size(); i++) {
+                BatteryCreateDTO dto = rows.get(i);
+                if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Battery battery = new Battery();
+                    battery.type = dto.type;
+                    battery.capacity = dto.capacity;
+                    battery.quantity = dto.quantity;
+                    battery.storageLocation = locations.get(dto.storageLocationId);
+                    batteryRepository.persist(battery);
+                    counterChanges.created(InventoryCounterService.counted(battery));
+                }
+            }
+            inventoryCounters.apply(counterChanges);
+        }));
+
+        targets.put("generators", new ImportTarget<>("Generator", GeneratorCreateDTO.class, (rows, errors) -> {
+            Map<Long, FuelType> fuelTypes = fuelTypeRepository.findByIds(ids(rows, dto -> dto.fuelTypeId));
+            Map<Long, StorageLocation> locations = storageLocationRepository.findByIds(ids(rows, dto -> dto.storageLocationId));
+            for (int i = 0; i < rows.size(); i++) {
+                GeneratorCreateDTO dto = rows.get(i);
+                if (!fuelTypes.containsKey(dto.fuelTypeId)) {
+                    errors.put(i, fuelTypeNotFound(dto.fuelTypeId));
+                } else if (!locations.containsKey(dto.storageLocationId)) {
+                    errors.put(i, storageLocationNotFound(dto.storageLocationId));
+                } else {
+                    Generator generator = new Generator();
+                    generator.type = dto.type;
+                    generator.power = dto.power;
+                    generator.status = dto.status;
+                    generator.fuelType = fuelTypes.get(dto.fuelTypeId);
+                    generator.storageLocation = locations.get(dto.storageLocationId);
+                    generatorRepository.persist(generator);
+                }
+            }
+        }));
+    }
+
+    // null if there is no resource type with that name
+    public ImportTarget<?> get(String resourceType) {
+        return targets.get(resourceType);
+    }
+
+    public Set<String> names() {
+        return targets.keySet();
+    }
+
+    private static <D> List<Long> ids(List<D> rows, Function<D, Long> id) {
+        return rows.stream().map(id).toList();
+    }
+
+    private static String storageLocationNotFound(Long id) {
+        return "Storage location not found with ID: " + id;
+    }
+
+    private static String fuelTypeNotFound(Long id) {
+        return "Fuel type not found with ID: " + id;
+    }
+}
@@ -0,0 +1,12 @@
+package org.jonasfroeller.services;
+
+// The uploaded snapshot is malformed or does not fit the schema, nothing has been restored
+public class InvalidSnapshotException extends RuntimeException {
+    public InvalidSnapshotException(String message) {
+        super(message);
+    }
+
+    public InvalidSnapshotException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,279 @@
+package org.jonasfroeller.services;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.jonasfroeller.dtos.AmmunitionStockDTO;
+import org.jonasfroeller.dtos.BatteryDTO;
+import org.jonasfroeller.dtos.FuelDTO;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.models.AmmunitionStock;
+import org.jonasfroeller.models.Battery;
+import org.jonasfroeller.models.Fuel;
+import org.jonasfroeller.models.InventoryCounter;
+import org.jonasfroeller.repositories.InventoryCount;
+import org.jonasfroeller.repositories.InventoryCounterRepository;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Running totals of ammunition stocks, fuel and batteries per type and storage location.
+// Writers add their changes to the inventory_counter table in their own transaction; total lookups
+// are served from an in-memory mirror of the per-type sums, which is dropped for a type once a change to it commits.
+// A scheduled reconciler compares the counters with the item tables and repairs any drift.
+@ApplicationScoped
+public class InventoryCounterService {
+    private static final Logger LOG = Logger.getLogger(InventoryCounterService.class);
+
+    public static final String AMMUNITION_STOCK = "AmmunitionStock";
+    public static final String FUEL = "Fuel";
+    public static final String BATTERY = "Battery";
+
+    private static final Set<String> COUNTED = Set.of(AMMUNITION_STOCK, FUEL, BATTERY);
+    private static final Set<String> CHANGES = Set.of("CREATE", "UPDATE", "DELETE");
+
+    private static final Comparator<InventoryCounter.Key> KEY_ORDER = Comparator
+            .comparing((InventoryCounter.Key key) -> key.resourceType)
+            .thenComparing(key -> key.typeKey)
+            .thenComparingLong(key -> key.storageLocationId);
+
+    @Inject
+    InventoryCounterRepository repository;
+
+    @Inject
+    AfterCommit afterCommit;
+
+    // Per-type sums by "resourceType\ntypeKey", only types with items are kept
+    private final Map<String, InventoryCount> mirror = new ConcurrentHashMap<>();
+    // Incremented before mirror entries are dropped, so lookups racing with a commit do not put back stale sums
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Total of a type over all storage locations, typeKey is the type ID or, for batteries, the type name
+    public InventoryCount total(String resourceType, String typeKey) {
+        String group = group(resourceType, typeKey);
+        InventoryCount total = mirror.get(group);
+        if (total != null) {
+            return total;
+        }
+
+        long invalidationsBefore = invalidations.get();
+        total = repository.sumByType(resourceType, typeKey);
+        if (total.itemCount() > 0) {
+            mirror.put(group, total);
+            if (invalidations.get() != invalidationsBefore) {
+                mirror.remove(group, total);
+            }
+        }
+        return total;
+    }
+
+    public void created(Item item) {
+        apply(new Changes().created(item));
+    }
+
+    public void updated(Item before, Item after) {
+        apply(new Changes().updated(before, after));
+    }
+
+    public void deleted(Item item) {
+        apply(new Changes().deleted(item));
+    }
+
+    // The quantity of an item was changed by delta in place, the item is taken after the change
+    public void adjusted(Item item, double delta) {
+        apply(new Changes().updated(new Item(item.key, item.quantity - delta), item));
+    }
+
+    // Writes the changes to the counters, must be called in the transaction that changes the items.
+    // The items have to be locked already (loaded for update, or changed by an update statement), so the values
+    // taken before a change are still current and every writer locks items before counters.
+    // Counters are always written in key order, so two transactions never wait for each other's row locks crosswise.
+    public void apply(Changes changes) {
+        Set<String> groups = new HashSet<>();
+        changes.deltas.forEach((key, delta) -> {
+            if (delta[0] != 0 || delta[1] != 0) {
+                repository.add(key, delta[0], (long) delta[1]);
+                groups.add(group(key.resourceType, key.typeKey));
+            }
+        });
+
+        if (!groups.isEmpty()) {
+            afterCommit.run(() -> invalidate(groups));
+        }
+    }
+
+    @Scheduled(every = "{bunker.inventory-counters.reconcile-every}", delayed = "{bunker.inventory-counters.reconcile-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledReconcile() {
+        reconcile();
+    }
+
+    // Compares every counter with the item tables and repairs the ones that drifted. Returns the number of repaired counters.
+    public int reconcile() {
+        Map<InventoryCounter.Key, InventoryCount> expected = QuarkusTransaction.requiringNew().call(() -> {
+            Map<InventoryCounter.Key, InventoryCount> counts = new HashMap<>();
+            for (String resourceType : InventoryCounterRepository.resourceTypes()) {
+                counts.putAll(repository.countItems(resourceType));
+            }
+            return counts;
+        });
+        Map<InventoryCounter.Key, InventoryCount> stored = QuarkusTransaction.requiringNew().call(() -> {
+            Map<InventoryCounter.Key, InventoryCount> counts = new HashMap<>();
+            repository.listAll().forEach(counter -> counts.put(
+                    new InventoryCounter.Key(counter.resourceType, counter.typeKey, counter.storageLocationId),
+                    new InventoryCount(counter.totalQuantity, counter.itemCount)));
+            return counts;
+        });
+
+        // Both reads race with writers, so a mismatch is only a suspicion until the counter is checked under its row lock
+        Set<InventoryCounter.Key> suspects = new HashSet<>();
+        expected.forEach((key, count) -> {
+            if (!count.matches(stored.getOrDefault(key, InventoryCount.ZERO))) suspects.add(key);
+        });
+        stored.forEach((key, count) -> {
+            if (!count.matches(expected.getOrDefault(key, InventoryCount.ZERO))) suspects.add(key);
+        });
+
+        int repaired = 0;
+        for (InventoryCounter.Key key : suspects) {
+            if (QuarkusTransaction.requiringNew().call(() -> repair(key))) {
+                repaired++;
+            }
+        }
+
+        invalidateAll();
+
+        if (repaired > 0) {
+            LOG.warnf("Repaired %d inventory counter(s) that did not match the item tables", repaired);
+        }
+        return repaired;
+    }
+
+    // Recreates all counters from the item tables after they were written without the counters (snapshot restore).
+    // Unlike reconcile, this must not run concurrently with other writers.
+    public void rebuild() {
+        QuarkusTransaction.requiringNew().run(repository::rebuild);
+        invalidateAll();
+    }
+
+    // Writers of this counter wait for the row lock, so the item count afterwards includes every committed change
+    private boolean repair(InventoryCounter.Key key) {
+        InventoryCounter counter = repository.lockOrCreate(key);
+        InventoryCount actual = repository.countItems(key);
+        if (actual.matches(new InventoryCount(counter.totalQuantity, counter.itemCount))) {
+            return false;
+        }
+
+        LOG.warnf("Inventory counter %s/%s at storage location %d was %s (%d items) instead of %s (%d items)",
+                key.resourceType, key.typeKey, key.storageLocationId,
+                counter.totalQuantity, counter.itemCount, actual.quantity(), actual.itemCount());
+        counter.totalQuantity = actual.quantity();
+        counter.itemCount = actual.itemCount();
+        return true;
+    }
+
+    // A change another instance committed (announced on the UpdateBus). The message does not say which types
+    // the items had before and after the change, so the sums of all types of the resource are dropped.
+    public void invalidate(ResourceUpdateMessage message) {
+        if (COUNTED.contains(message.resourceType) && CHANGES.contains(message.action)) {
+            String prefix = message.resourceType + "\n";
+            invalidations.incrementAndGet();
+            mirror.keySet().removeIf(group -> group.startsWith(prefix));
+        }
+    }
+
+    // For changes that may have been missed (e.g. while the update bus was disconnected)
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        mirror.clear();
+    }
+
+    private void invalidate(Set<String> groups) {
+        invalidations.incrementAndGet();
+        groups.forEach(mirror::remove);
+    }
+
+    private static String group(String resourceType, String typeKey) {
+        return resourceType + "\n" + typeKey;
+    }
+
+    public static Item counted(AmmunitionStock stock) {
+        return new Item(AMMUNITION_STOCK, stock.ammunitionType == null ? null : String.valueOf(stock.ammunitionType.id),
+                stock.storageLocation == null ? null : stock.storageLocation.id, stock.quantity);
+    }
+
+    public static Item counted(Fuel fuel) {
+        return new Item(FUEL, fuel.fuelType == null ? null : String.valueOf(fuel.fuelType.id),
+                fuel.storageLocation == null ? null : fuel.storageLocation.id, fuel.quantity);
+    }
+
+    public static Item counted(Battery battery) {
+        return new Item(BATTERY, battery.type,
+                battery.storageLocation == null ? null : battery.storageLocation.id, battery.quantity);
+    }
+
+    public static Item counted(AmmunitionStockDTO stock) {
+        return new Item(AMMUNITION_STOCK, stock.ammunitionTypeId == null ? null : String.valueOf(stock.ammunitionTypeId),
+                stock.storageLocationId, stock.quantity);
+    }
+
+    public static Item counted(FuelDTO fuel) {
+        return new Item(FUEL, fuel.fuelTypeId == null ? null : String.valueOf(fuel.fuelTypeId),
+                fuel.storageLocationId, fuel.quantity);
+    }
+
+    public static Item counted(BatteryDTO battery) {
+        return new Item(BATTERY, battery.type, battery.storageLocationId, battery.quantity);
+    }
+
+    // An item as it is counted, take it before changing the entity when it is the "before" of an update
+    public static class Item {
+        private final InventoryCounter.Key key;
+        private final double quantity;
+
+        // No type or storage location are counted under "" and 0, as in V3__inventory_counters.sql
+        Item(String resourceType, String typeKey, Long storageLocationId, double quantity) {
+            this.key = new InventoryCounter.Key(resourceType, typeKey == null ? "" : typeKey,
+                    storageLocationId == null ? 0 : storageLocationId);
+            this.quantity = quantity;
+        }
+
+        private Item(InventoryCounter.Key key, double quantity) {
+            this.key = key;
+            this.quantity = quantity;
+        }
+    }
+
+    // Counter deltas of several item changes, merged per counter
+    public static class Changes {
+        // {quantity, item count} per counter
+        private final Map<InventoryCounter.Key, double[]> deltas = new TreeMap<>(KEY_ORDER);
+
+        public Changes created(Item item) {
+            return add(item, 1);
+        }
+
+        public Changes deleted(Item item) {
+            return add(item, -1);
+        }
+
+        public Changes updated(Item before, Item after) {
+            return add(before, -1).add(after, 1);
+        }
+
+        private Changes add(Item item, int sign) {
+            double[] delta = deltas.computeIfAbsent(item.key, key -> new double[2]);
+            delta[0] += sign * item.quantity;
+            delta[1] += sign;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.jonasfroeller.services;
+
+import io.quarkus.arc.properties.UnlessBuildProperty;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.websocket.ResourceUpdateSocket;
+
+// Single instance: every client is connected to this JVM, so publishing is delivering
+@ApplicationScoped
+@UnlessBuildProperty(name = "bunker.updates.bus", stringValue = "postgres", enableIfMissing = true)
+public class LocalUpdateBus implements UpdateBus {
+
+    @Inject
+    ResourceUpdateSocket resourceUpdateSocket;
+
+    @Override
+    public void publish(ResourceUpdateMessage message) {
+        resourceUpdateSocket.broadcast(message);
+    }
+
+    @Override
+    public boolean sendsScheduledNotifications() {
+        return true;
+    }
+}
@@ -1,31 +1,132 @@
 package org.jonasfroeller.services;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
 import org.jonasfroeller.dtos.ResourceUpdateMessage;
-import org.jonasfroeller.websocket.ResourceUpdateSocket;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Notifications are called from inside the resources' transactions but only leave once the transaction committed,
+// so clients never hear about rows that were rolled back. The messages of a transaction are kept in its outbox
+// until then and handed to a single dispatcher thread, which keeps them in commit order and publishes them
+// on the UpdateBus after the request has already released its database connection.
 @ApplicationScoped
 public class NotificationService {
 
+    private static final Logger LOG = Logger.getLogger(NotificationService.class);
+
+    @Inject
+    UpdateBus bus;
+
+    @Inject
+    AfterCommit afterCommit;
+
+    @Inject
+    TableVersions tableVersions;
+
     @Inject
-    ResourceUpdateSocket resourceUpdateSocket;
+    ResponseCache responseCache;
+
+    private ExecutorService dispatcher;
+
+    @PostConstruct
+    void start() {
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Lets the already committed notifications go out before shutting down
+    @PreDestroy
+    void stop() throws InterruptedException {
+        dispatcher.shutdown();
+        if (!dispatcher.awaitTermination(5, TimeUnit.SECONDS)) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    private void publish(ResourceUpdateMessage updateMessage) {
+        afterCommit.run(() -> {
+            // Right on commit, not on the dispatcher, so the next GET of this client already sees the change
+            tableVersions.changed(updateMessage);
+            responseCache.invalidate(updateMessage);
+            dispatcher.execute(() -> {
+                try {
+                    bus.publish(updateMessage);
+                } catch (RuntimeException e) {
+                    LOG.error("Publishing " + updateMessage.action + " " + updateMessage.resourceType + " failed", e);
+                }
+            });
+        });
+    }
 
-    public void notifyResourceCreated(String resourceType, Long resourceId, String details) {
+    // data is the resource after the change (its DTO), only sent to clients that asked for full payloads
+    public void notifyResourceCreated(String resourceType, Long resourceId, Long storageLocationId, String details, Object data) {
         String message = resourceType + " created: " + details;
-        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("CREATE", resourceType, resourceId, message);
-        resourceUpdateSocket.broadcast(updateMessage);
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("CREATE", resourceType, resourceId, storageLocationId, message);
+        updateMessage.data = data;
+        publish(updateMessage);
     }
 
-    public void notifyResourceUpdated(String resourceType, Long resourceId, String details) {
+    public void notifyResourceUpdated(String resourceType, Long resourceId, Long storageLocationId, String details, Object data) {
         String message = resourceType + " updated: " + details;
-        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("UPDATE", resourceType, resourceId, message);
-        resourceUpdateSocket.broadcast(updateMessage);
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("UPDATE", resourceType, resourceId, storageLocationId, message);
+        updateMessage.data = data;
+        publish(updateMessage);
     }
 
     public void notifyResourceDeleted(String resourceType, Long resourceId, String details) {
+        notifyResourceDeleted(resourceType, resourceId, null, details);
+    }
+
+    public void notifyResourceDeleted(String resourceType, Long resourceId, Long storageLocationId, String details) {
         String message = resourceType + " deleted: " + details;
-        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("DELETE", resourceType, resourceId, message);
-        resourceUpdateSocket.broadcast(updateMessage);
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("DELETE", resourceType, resourceId, storageLocationId, message);
+        publish(updateMessage);
+    }
+
+    // One message for a whole batch, resourceId is null since it covers several resources
+    public void notifyResourcesCreated(String resourceType, int count) {
+        notifyResourcesCreated(resourceType, count, null);
+    }
+
+    // Batches of the REST API also carry the created DTOs, bulk imports and restores only the count
+    public void notifyResourcesCreated(String resourceType, List<?> created) {
+        notifyResourcesCreated(resourceType, created.size(), List.copyOf(created));
+    }
+
+    public void notifyResourcesUpdated(String resourceType, List<?> updated) {
+        String message = updated.size() + " " + resourceType + " updated";
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("UPDATE", resourceType, null, message);
+        updateMessage.data = List.copyOf(updated);
+        publish(updateMessage);
+    }
+
+    private void notifyResourcesCreated(String resourceType, int count, List<?> data) {
+        String message = count + " " + resourceType + " created";
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("CREATE", resourceType, null, message);
+        updateMessage.data = data;
+        publish(updateMessage);
+    }
+
+    // Sent by the ExpiryIndex when a perishable item enters the expiring-soon window or expires
+    public void notifyItemExpiring(String resourceType, Long resourceId, Long storageLocationId, String details) {
+        String message = resourceType + " expiring soon: " + details;
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("EXPIRING", resourceType, resourceId, storageLocationId, message);
+        publish(updateMessage);
+    }
+
+    public void notifyItemExpired(String resourceType, Long resourceId, Long storageLocationId, String details) {
+        String message = resourceType + " expired: " + details;
+        ResourceUpdateMessage updateMessage = new ResourceUpdateMessage("EXPIRED", resourceType, resourceId, storageLocationId, message);
+        publish(updateMessage);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,264 @@
+package org.jonasfroeller.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.websocket.ResourceUpdateSocket;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+// Several instances behind a load balancer: every update is delivered to the local clients right away and sent to the
+// other instances with Postgres NOTIFY. Each instance LISTENs on a dedicated connection and delivers what the others
+// published to its own clients. Updates carry their origin and a per-origin event id, so an instance skips its own
+// updates and any it has already delivered (a publish that is retried after an unclear failure arrives twice).
+// The instance whose listener connection holds the advisory lock of the channel sends the notifications of scheduled
+// checks, another one takes over when its connection is gone.
+// Started with the application, so it listens before this instance publishes anything itself
+@Startup
+@ApplicationScoped
+@IfBuildProperty(name = "bunker.updates.bus", stringValue = "postgres")
+public class PostgresUpdateBus implements UpdateBus {
+    private static final Logger LOG = Logger.getLogger(PostgresUpdateBus.class);
+
+    // NOTIFY payloads must stay below 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final int POLL_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+    private static final long LOCK_RETRY_MILLIS = 10_000;
+
+    // What travels between the instances, the sequence number of the message is assigned by each instance itself
+    public static class Envelope {
+        public String origin;
+        public long eventId;
+        public ResourceUpdateMessage message;
+
+        public Envelope() {
+        }
+
+        public Envelope(String origin, long eventId, ResourceUpdateMessage message) {
+            this.origin = origin;
+            this.eventId = eventId;
+            this.message = message;
+        }
+    }
+
+    @Inject
+    ResourceUpdateSocket resourceUpdateSocket;
+
+    @Inject
+    TableVersions tableVersions;
+
+    @Inject
+    ResponseCache responseCache;
+
+    @Inject
+    InventoryCounterService inventoryCounters;
+
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    DataSource dataSource;
+
+    @ConfigProperty(name = "bunker.updates.bus-channel", defaultValue = "bunker_updates")
+    String channel;
+
+    @ConfigProperty(name = "quarkus.datasource.jdbc.url")
+    String jdbcUrl;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    Optional<String> username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    Optional<String> password;
+
+    private final String origin = UUID.randomUUID().toString();
+    private long lastEventId;
+    // Highest event id delivered per origin, every origin publishes from a single thread in order.
+    // Only used by the listener thread.
+    private final Map<String, Long> delivered = new HashMap<>();
+    private volatile boolean running = true;
+    // Held by the listener connection, Postgres releases it when the session ends
+    private volatile boolean lockHeld;
+    private Thread listener;
+
+    @PostConstruct
+    void start() {
+        // LISTEN takes an identifier, not a parameter
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("bunker.updates.bus-channel must be a lowercase identifier: " + channel);
+        }
+        listener = new Thread(this::listen, "update-bus-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        listener.interrupt();
+    }
+
+    @Override
+    public boolean sendsScheduledNotifications() {
+        return lockHeld;
+    }
+
+    @Override
+    public void publish(ResourceUpdateMessage message) {
+        resourceUpdateSocket.broadcast(message);
+
+        String payload = encode(new Envelope(origin, ++lastEventId, message));
+        if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+            // Large batches go to the other instances without their DTOs, their clients are told what changed
+            payload = encode(new Envelope(origin, lastEventId, message.withoutData()));
+        }
+
+        try {
+            notify(payload);
+        } catch (SQLException first) {
+            try {
+                notify(payload);
+            } catch (SQLException e) {
+                LOG.errorf(e, "Unable to send %s %s to the other instances", message.action, message.resourceType);
+            }
+        }
+    }
+
+    private void notify(String payload) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, payload);
+            statement.execute();
+        }
+    }
+
+    private void listen() {
+        long reconnectDelay = 500;
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(jdbcUrl, username.orElse(null), password.orElse(null))) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (reconnecting) {
+                    // Whatever the other instances published meanwhile is lost
+                    LOG.info("Listening for updates of the other instances again");
+                    resourceUpdateSocket.resyncAll("Updates of other instances may have been missed, reload the data");
+                    tableVersions.changedAll();
+                    responseCache.invalidateAll();
+                    inventoryCounters.invalidateAll();
+                    try {
+                        expiryIndex.reload();
+                    } catch (RuntimeException e) {
+                        LOG.error("Unable to reload the expiry index after reconnecting", e);
+                    }
+                }
+                reconnectDelay = 500;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                long nextLockAttempt = 0;
+                while (running) {
+                    if (!lockHeld && System.currentTimeMillis() >= nextLockAttempt) {
+                        lockHeld = tryLock(connection);
+                        nextLockAttempt = System.currentTimeMillis() + LOCK_RETRY_MILLIS;
+                    }
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                lockHeld = false;
+                if (!running) {
+                    return;
+                }
+                LOG.warnf(e, "Lost the update bus connection, reconnecting in %d ms", reconnectDelay);
+                reconnecting = true;
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(hashtext(?))")) {
+            statement.setString(1, channel);
+            try (ResultSet result = statement.executeQuery()) {
+                boolean locked = result.next() && result.getBoolean(1);
+                if (locked) {
+                    LOG.info("This instance sends the notifications of scheduled checks");
+                }
+                return locked;
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        Envelope envelope;
+        try {
+            envelope = objectMapper.readValue(payload, Envelope.class);
+        } catch (JsonProcessingException e) {
+            LOG.warnf(e, "Ignoring an unreadable update on channel %s", channel);
+            return;
+        }
+
+        if (origin.equals(envelope.origin)) {
+            return;
+        }
+        Long previous = delivered.get(envelope.origin);
+        if (previous != null && envelope.eventId <= previous) {
+            return;
+        }
+        delivered.put(envelope.origin, envelope.eventId);
+        // The other instance changed the shared tables, so the ETags handed out here are outdated as well
+        tableVersions.changed(envelope.message);
+        responseCache.invalidate(envelope.message);
+        inventoryCounters.invalidate(envelope.message);
+        try {
+            expiryIndex.applyRemote(envelope.message);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Unable to apply %s %s to the expiry index", envelope.message.action, envelope.message.resourceType);
+        }
+        resourceUpdateSocket.broadcast(envelope.message);
+    }
+
+    private String encode(Envelope envelope) {
+        try {
+            return objectMapper.writeValueAsString(envelope);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to encode resource update", e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.jonasfroeller.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.dtos.ResponseCacheStatisticsDTO;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serialized list responses of hot read endpoints, kept until a change they depend on commits.
+// Caffeine bounds the cache by the size of the bodies and evicts with W-TinyLFU, so pages that are read once
+// (e.g. while paging through everything) do not push out the lists that are read all the time.
+// Every entry is tagged with what its result was read from:
+//   Food      any change of a food item may change it (it filters by a column, e.g. the expiration date)
+//   Food@3    a change of a food item at storage location 3 may change it (a by-location list)
+//   Food#7    it shows food item 7, or StorageLocation#3 the name of location 3
+// A change of food item 7 at location 3 removes the entries tagged Food, Food#7 and Food@3.
+@ApplicationScoped
+public class ResponseCache {
+    // Rough memory of an entry besides its body: the entry, its key and its tags
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int TAG_OVERHEAD_BYTES = 64;
+
+    public static class Entry {
+        public final byte[] body;  // the array of the page, in JSON or one of the BinaryFormats
+        public final String nextCursor;
+        public final Long total;
+        private final String key;
+        private final Set<String> tags;
+
+        public Entry(String key, byte[] body, String nextCursor, Long total, Set<String> tags) {
+            this.key = key;
+            this.body = body;
+            this.nextCursor = nextCursor;
+            this.total = total;
+            this.tags = tags;
+        }
+
+        private int weight() {
+            return body.length + ENTRY_OVERHEAD_BYTES + 2 * key.length() + TAG_OVERHEAD_BYTES * tags.size();
+        }
+    }
+
+    @ConfigProperty(name = "bunker.response-cache.max-size", defaultValue = "16M")
+    MemorySize maxSize;
+
+    private Cache<String, Entry> cache;
+    // Entries by tag. A tag's set is only changed inside compute, so an entry that is being added is never lost
+    // to a concurrent removal of the last other entry. Removed sets are not changed anymore.
+    private final Map<String, Set<Entry>> index = new ConcurrentHashMap<>();
+    // Incremented before every invalidation, a result loaded while one ran may already be outdated
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile CacheStats statisticsBaseline = CacheStats.empty();
+
+    public static String anyOf(String resourceType) {
+        return resourceType;
+    }
+
+    public static String at(String resourceType, Long storageLocationId) {
+        return resourceType + "@" + storageLocationId;
+    }
+
+    public static String one(String resourceType, Long id) {
+        return resourceType + "#" + id;
+    }
+
+    @PostConstruct
+    void start() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.asLongValue())
+                .weigher((String key, Entry entry) -> entry.weight())
+                .removalListener((String key, Entry entry, RemovalCause cause) -> unindex(entry))
+                .recordStats()
+                .build();
+    }
+
+    public Entry get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    // Read before running the query whose result is put afterwards
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(Entry entry, long loadedAt) {
+        for (String tag : entry.tags) {
+            index.compute(tag, (t, entries) -> {
+                Set<Entry> tagged = entries == null ? new HashSet<>() : entries;
+                tagged.add(entry);
+                return tagged;
+            });
+        }
+        cache.put(entry.key, entry);
+
+        // Indexed before it became visible, so every invalidation from here on finds it.
+        // One that ran while the query did may have come too early and the result is dropped instead.
+        if (generation.get() != loadedAt) {
+            cache.asMap().remove(entry.key, entry);
+        }
+    }
+
+    public void invalidate(ResourceUpdateMessage message) {
+        if (message.resourceType == null) {
+            return;
+        }
+        if (message.resourceId == null) {
+            invalidate(message.resourceType);
+            return;
+        }
+
+        generation.incrementAndGet();
+        evict(anyOf(message.resourceType));
+        // An item that moved is found by its id in the lists of its old location
+        evict(one(message.resourceType, message.resourceId));
+        if (message.storageLocationId != null) {
+            evict(at(message.resourceType, message.storageLocationId));
+        } else {
+            evictMatching(message.resourceType + "@");
+        }
+    }
+
+    // Batches, imports and restores: everything that depends on the resource type
+    public void invalidate(String resourceType) {
+        generation.incrementAndGet();
+        evict(anyOf(resourceType));
+        evictMatching(resourceType + "#");
+        evictMatching(resourceType + "@");
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.add(cache.estimatedSize());
+        cache.invalidateAll();
+    }
+
+    public ResponseCacheStatisticsDTO statistics() {
+        CacheStats stats = cache.stats().minus(statisticsBaseline);
+        long bytes = cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+        return new ResponseCacheStatisticsDTO(stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), invalidations.sum(), cache.estimatedSize(), bytes, maxSize.asLongValue());
+    }
+
+    public void resetStatistics() {
+        statisticsBaseline = cache.stats();
+        invalidations.reset();
+    }
+
+    private void evictMatching(String tagPrefix) {
+        for (String tag : index.keySet()) {
+            if (tag.startsWith(tagPrefix)) {
+                evict(tag);
+            }
+        }
+    }
+
+    private void evict(String tag) {
+        Set<Entry> entries = index.remove(tag);
+        if (entries != null) {
+            for (Entry entry : entries) {
+                if (cache.asMap().remove(entry.key, entry)) {
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    // The entry's other tags still point to it after an eviction or invalidation by one tag
+    private void unindex(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        for (String tag : entry.tags) {
+            index.computeIfPresent(tag, (t, entries) -> {
+                entries.remove(entry);
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package org.jonasfroeller.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.jboss.logging.Logger;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.jonasfroeller.services.SnapshotTable.ColumnType.*;
+import static org.jonasfroeller.services.SnapshotTable.column;
+
+// Full-bunker backup as gzip-compressed NDJSON: a header line, then one {"table", "row"} line per row,
+// tables in foreign key order. Export reads every table with a cursor, restore inserts with JDBC
+// batches while the upload is parsed, so memory use does not depend on the size of the inventory.
+@ApplicationScoped
+public class SnapshotService {
+    private static final Logger LOG = Logger.getLogger(SnapshotService.class);
+
+    public static final String FORMAT = "prepper-bunker-snapshot";
+    public static final int VERSION = 1;
+
+    private static final int TRANSACTION_TIMEOUT_SECONDS = 60 * 60;
+    private static final int FETCH_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int FLUSH_EVERY_ROWS = 10000;
+    // allocation size of the Hibernate ID sequences
+    private static final int SEQUENCE_INCREMENT = 50;
+
+    // Referenced tables come before the tables referencing them
+    static final List<SnapshotTable> TABLES = List.of(
+            new SnapshotTable("storage_location", "StorageLocation",
+                    column("id", LONG), column("name", STRING), column("description", STRING)),
+            new SnapshotTable("fuel_type", "FuelType",
+                    column("id", LONG), column("name", STRING)),
+            new SnapshotTable("ammunition_type", "AmmunitionType",
+                    column("id", LONG), column("caliber", STRING), column("type", STRING)),
+            new SnapshotTable("weapon", "Weapon",
+                    column("id", LONG), column("type", STRING), column("model", STRING), column("quantity", INT),
+                    column("ammunition_type_id", LONG), column("storage_location_id", LONG)),
+            new SnapshotTable("ammunition_stock", "AmmunitionStock",
+                    column("id", LONG), column("quantity", INT),
+                    column("ammunition_type_id", LONG), column("storage_location_id", LONG)),
+            new SnapshotTable("food", "Food",
+                    column("id", LONG), column("type", STRING), column("quantity", DOUBLE),
+                    column("expiration_date", DATE), column("storage_location_id", LONG)),
+            new SnapshotTable("drink", "Drink",
+                    column("id", LONG), column("type", STRING), column("quantity", DOUBLE),
+                    column("expiration_date", DATE), column("storage_location_id", LONG)),
+            new SnapshotTable("medication", "Medication",
+                    column("id", LONG), column("name", STRING), column("quantity", INT),
+                    column("expiration_date", DATE), column("purpose", STRING), column("storage_location_id", LONG)),
+            new SnapshotTable("fuel", "Fuel",
+                    column("id", LONG), column("quantity", DOUBLE),
+                    column("fuel_type_id", LONG), column("storage_location_id", LONG)),
+            new SnapshotTable("battery", "Battery",
+                    column("id", LONG), column("type", STRING), column("capacity", DOUBLE), column("quantity", INT),
+                    column("storage_location_id", LONG)),
+            new SnapshotTable("generator", "Generator",
+                    column("id", LONG), column("type", STRING), column("power", DOUBLE), column("status", STRING),
+                    column("fuel_type_id", LONG), column("storage_location_id", LONG))
+    );
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    InventoryCounterService inventoryCounters;
+
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @Inject
+    NotificationService notificationService;
+
+    // Writes the snapshot to output, all tables are read in one transaction so they are consistent
+    public void export(OutputStream output) {
+        QuarkusTransaction.requiringNew()
+                .timeout(TRANSACTION_TIMEOUT_SECONDS)
+                .run(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        useRepeatableRead(connection);
+                        writeSnapshot(connection, output);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Snapshot export failed", e);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    // Restores a snapshot into an empty database, all or nothing. Returns the restored row count per table.
+    public Map<String, Long> restore(InputStream input) {
+        Map<String, Long> restored = QuarkusTransaction.requiringNew()
+                .timeout(TRANSACTION_TIMEOUT_SECONDS)
+                .call(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        ensureEmpty(connection);
+                        Map<String, Long> counts = insertRows(connection, input);
+                        resetSequences(connection);
+                        return counts;
+                    } catch (SQLException e) {
+                        throw new InvalidSnapshotException("Snapshot does not fit the database: " + e.getMessage(), e);
+                    } catch (IOException e) {
+                        throw new InvalidSnapshotException("Snapshot could not be read: " + e.getMessage(), e);
+                    }
+                });
+
+        // The rows were inserted with plain JDBC, so cached (empty) query results of the reference tables are stale
+        // and neither the inventory counters nor the expiry index have seen them
+        sessionFactory.getCache().evictAllRegions();
+        startNewIdBlocks();
+        inventoryCounters.rebuild();
+        expiryIndex.reload();
+
+        for (SnapshotTable table : TABLES) {
+            long count = restored.get(table.name());
+            if (count > 0) {
+                notificationService.notifyResourcesCreated(table.resourceType(), (int) Math.min(count, Integer.MAX_VALUE));
+            }
+        }
+        return restored;
+    }
+
+    private void writeSnapshot(Connection connection, OutputStream output) throws SQLException, IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(output, 64 * 1024);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip);
+        generator.setRootValueSeparator(null);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        generator.writeStartObject();
+        generator.writeStringField("format", FORMAT);
+        generator.writeNumberField("version", VERSION);
+        generator.writeStringField("createdAt", Instant.now().toString());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+
+        long rows = 0;
+        for (SnapshotTable table : TABLES) {
+            try (Statement statement = connection.createStatement()) {
+                statement.setFetchSize(FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery(table.selectSql())) {
+                    while (resultSet.next()) {
+                        generator.writeStartObject();
+                        generator.writeStringField("table", table.name());
+                        generator.writeObjectFieldStart("row");
+                        for (int i = 0; i < table.columns().size(); i++) {
+                            SnapshotTable.Column column = table.columns().get(i);
+                            generator.writeFieldName(column.name());
+                            column.type().write(generator, resultSet, i + 1);
+                        }
+                        generator.writeEndObject();
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+
+                        if (++rows % FLUSH_EVERY_ROWS == 0) {
+                            generator.flush();
+                        }
+                    }
+                }
+            }
+        }
+
+        generator.close();
+        gzip.finish();
+        output.flush();
+    }
+
+    private Map<String, Long> insertRows(Connection connection, InputStream input) throws SQLException, IOException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        TABLES.forEach(table -> counts.put(table.name(), 0L));
+
+        try (MappingIterator<ObjectNode> lines = objectMapper.readerFor(ObjectNode.class)
+                .readValues(new GZIPInputStream(input, 64 * 1024))) {
+            readHeader(lines);
+
+            int tableIndex = -1;
+            PreparedStatement insert = null;
+            int pending = 0;
+            long line = 1;
+            try {
+                while (lines.hasNextValue()) {
+                    ObjectNode value = lines.nextValue();
+                    line++;
+
+                    String tableName = value.path("table").asText(null);
+                    int index = indexOf(tableName);
+                    if (index < 0) {
+                        throw new InvalidSnapshotException("Unknown table in line " + line + ": " + tableName);
+                    }
+                    if (index < tableIndex) {
+                        throw new InvalidSnapshotException("Table " + tableName + " in line " + line +
+                                " comes after a table referencing it");
+                    }
+
+                    SnapshotTable table = TABLES.get(index);
+                    if (index != tableIndex) {
+                        executeBatch(insert, pending);
+                        pending = 0;
+                        if (insert != null) {
+                            insert.close();
+                        }
+                        insert = connection.prepareStatement(table.insertSql());
+                        tableIndex = index;
+                    }
+
+                    bindRow(insert, table, value.path("row"), line);
+                    insert.addBatch();
+                    counts.merge(table.name(), 1L, Long::sum);
+                    if (++pending == INSERT_BATCH_SIZE) {
+                        executeBatch(insert, pending);
+                        pending = 0;
+                    }
+                }
+                executeBatch(insert, pending);
+            } finally {
+                if (insert != null) {
+                    insert.close();
+                }
+            }
+        }
+        return counts;
+    }
+
+    private void readHeader(MappingIterator<ObjectNode> lines) throws IOException {
+        if (!lines.hasNextValue()) {
+            throw new InvalidSnapshotException("Snapshot is empty");
+        }
+
+        ObjectNode header = lines.nextValue();
+        if (!FORMAT.equals(header.path("format").asText(null))) {
+            throw new InvalidSnapshotException("Not a snapshot, the first line must be the snapshot header");
+        }
+        if (header.path("version").asInt() != VERSION) {
+            throw new InvalidSnapshotException("Unsupported snapshot version: " + header.path("version"));
+        }
+    }
+
+    private void bindRow(PreparedStatement insert, SnapshotTable table, JsonNode row, long line) throws SQLException {
+        if (!row.isObject() || !row.path("id").canConvertToLong()) {
+            throw new InvalidSnapshotException("Row in line " + line + " has no ID");
+        }
+
+        for (int i = 0; i < table.columns().size(); i++) {
+            SnapshotTable.Column column = table.columns().get(i);
+            JsonNode value = row.get(column.name());
+            if (value != null && !value.isNull() && !column.type().accepts(value)) {
+                throw new InvalidSnapshotException("Invalid value for " + table.name() + "." + column.name() +
+                        " in line " + line + ": " + value);
+            }
+            column.type().bind(insert, i + 1, value);
+        }
+    }
+
+    private void executeBatch(PreparedStatement insert, int pending) throws SQLException {
+        if (insert != null && pending > 0) {
+            insert.executeBatch();
+        }
+    }
+
+    private void ensureEmpty(Connection connection) throws SQLException {
+        for (SnapshotTable table : TABLES) {
+            try (Statement statement = connection.createStatement()) {
+                statement.setMaxRows(1);
+                try (ResultSet resultSet = statement.executeQuery("select id from " + table.name())) {
+                    if (resultSet.next()) {
+                        throw new BunkerNotEmptyException("Snapshots can only be restored into an empty bunker, " +
+                                table.name() + " already contains rows");
+                    }
+                }
+            }
+        }
+    }
+
+    // Restored rows keep their IDs, so the ID sequences have to continue above them
+    private void resetSequences(Connection connection) throws SQLException {
+        for (SnapshotTable table : TABLES) {
+            try (Statement statement = connection.createStatement()) {
+                long maxId;
+                try (ResultSet resultSet = statement.executeQuery("select max(id) from " + table.name())) {
+                    resultSet.next();
+                    maxId = resultSet.getLong(1);
+                }
+                if (maxId > 0) {
+                    statement.execute("alter sequence " + table.sequenceName() + " restart with " + (maxId + SEQUENCE_INCREMENT));
+                }
+            }
+        }
+    }
+
+    // Hibernate hands out IDs from blocks it took from the sequences before the restore. Rows created and deleted
+    // before restoring leave the rest of such a block behind, and the restored rows may use those IDs. Every
+    // generator uses up what is left of its block (at most a block size), so its next ID comes from the restarted sequence.
+    private void startNewIdBlocks() {
+        SessionFactoryImplementor factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        QuarkusTransaction.requiringNew().run(() -> {
+            try (StatelessSession session = factory.openStatelessSession()) {
+                factory.getMappingMetamodel().forEachEntityDescriptor(entity -> {
+                    if (entity.getGenerator() instanceof SequenceStyleGenerator generator) {
+                        for (int i = 0; i < generator.getOptimizer().getIncrementSize(); i++) {
+                            generator.generate((SharedSessionContractImplementor) session, null);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    // Without it the tables could be read at different points in time and reference rows that were not exported
+    private void useRepeatableRead(Connection connection) {
+        try {
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        } catch (SQLException e) {
+            LOG.warn("Snapshot export runs without repeatable read, tables may be read at different points in time", e);
+        }
+    }
+
+    private static int indexOf(String tableName) {
+        for (int i = 0; i < TABLES.size(); i++) {
+            if (TABLES.get(i).name().equals(tableName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
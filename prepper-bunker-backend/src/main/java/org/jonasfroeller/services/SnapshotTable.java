@@ -0,0 +1,206 @@
+package org.jonasfroeller.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// A table as it is written to and read from a snapshot. Columns are plain JDBC columns,
+// foreign keys are kept as IDs, so restored rows keep their IDs and references.
+public class SnapshotTable {
+    private final String name;
+    private final String resourceType;
+    private final List<Column> columns;
+
+    public SnapshotTable(String name, String resourceType, Column... columns) {
+        this.name = name;
+        this.resourceType = resourceType;
+        this.columns = Arrays.asList(columns);
+    }
+
+    public static Column column(String name, ColumnType type) {
+        return new Column(name, type);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String resourceType() {
+        return resourceType;
+    }
+
+    public List<Column> columns() {
+        return columns;
+    }
+
+    // Hibernate's sequence for the table's IDs
+    public String sequenceName() {
+        return name + "_SEQ";
+    }
+
+    public String selectSql() {
+        return "select " + columnList() + " from " + name + " order by id";
+    }
+
+    public String insertSql() {
+        String placeholders = columns.stream().map(column -> "?").collect(Collectors.joining(", "));
+        return "insert into " + name + " (" + columnList() + ") values (" + placeholders + ")";
+    }
+
+    private String columnList() {
+        return columns.stream().map(Column::name).collect(Collectors.joining(", "));
+    }
+
+    public static class Column {
+        private final String name;
+        private final ColumnType type;
+
+        Column(String name, ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public ColumnType type() {
+            return type;
+        }
+    }
+
+    public enum ColumnType {
+        LONG(Types.BIGINT) {
+            @Override
+            void write(JsonGenerator generator, ResultSet resultSet, int index) throws IOException, SQLException {
+                long value = resultSet.getLong(index);
+                if (resultSet.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+
+            @Override
+            boolean accepts(JsonNode value) {
+                return value.isIntegralNumber() && value.canConvertToLong();
+            }
+
+            @Override
+            void bindValue(PreparedStatement statement, int index, JsonNode value) throws SQLException {
+                statement.setLong(index, value.longValue());
+            }
+        },
+        INT(Types.INTEGER) {
+            @Override
+            void write(JsonGenerator generator, ResultSet resultSet, int index) throws IOException, SQLException {
+                int value = resultSet.getInt(index);
+                if (resultSet.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+
+            @Override
+            boolean accepts(JsonNode value) {
+                return value.isIntegralNumber() && value.canConvertToInt();
+            }
+
+            @Override
+            void bindValue(PreparedStatement statement, int index, JsonNode value) throws SQLException {
+                statement.setInt(index, value.intValue());
+            }
+        },
+        DOUBLE(Types.DOUBLE) {
+            @Override
+            void write(JsonGenerator generator, ResultSet resultSet, int index) throws IOException, SQLException {
+                double value = resultSet.getDouble(index);
+                if (resultSet.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+
+            @Override
+            boolean accepts(JsonNode value) {
+                return value.isNumber();
+            }
+
+            @Override
+            void bindValue(PreparedStatement statement, int index, JsonNode value) throws SQLException {
+                statement.setDouble(index, value.doubleValue());
+            }
+        },
+        STRING(Types.VARCHAR) {
+            @Override
+            void write(JsonGenerator generator, ResultSet resultSet, int index) throws IOException, SQLException {
+                generator.writeString(resultSet.getString(index));
+            }
+
+            @Override
+            boolean accepts(JsonNode value) {
+                return value.isTextual();
+            }
+
+            @Override
+            void bindValue(PreparedStatement statement, int index, JsonNode value) throws SQLException {
+                statement.setString(index, value.textValue());
+            }
+        },
+        DATE(Types.DATE) {
+            @Override
+            void write(JsonGenerator generator, ResultSet resultSet, int index) throws IOException, SQLException {
+                Date value = resultSet.getDate(index);
+                generator.writeString(value == null ? null : value.toLocalDate().toString());
+            }
+
+            @Override
+            boolean accepts(JsonNode value) {
+                try {
+                    return value.isTextual() && LocalDate.parse(value.textValue()) != null;
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            void bindValue(PreparedStatement statement, int index, JsonNode value) throws SQLException {
+                statement.setDate(index, Date.valueOf(LocalDate.parse(value.textValue())));
+            }
+        };
+
+        private final int sqlType;
+
+        ColumnType(int sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        abstract void write(JsonGenerator generator, ResultSet resultSet, int index) throws IOException, SQLException;
+
+        abstract boolean accepts(JsonNode value);
+
+        abstract void bindValue(PreparedStatement statement, int index, JsonNode value) throws SQLException;
+
+        // Missing and null values are bound as SQL NULL
+        void bind(PreparedStatement statement, int index, JsonNode value) throws SQLException {
+            if (value == null || value.isNull()) {
+                statement.setNull(index, sqlType);
+            } else {
+                bindValue(statement, index, value);
+            }
+        }
+    }
+}
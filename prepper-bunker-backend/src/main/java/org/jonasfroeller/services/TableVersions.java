@@ -0,0 +1,53 @@
+package org.jonasfroeller.services;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Change counter per resource type, bumped right after every committed create, update or delete (and for the changes
+// other instances announce on the UpdateBus). GET endpoints derive their ETag from the counters of the tables their
+// response is read from, so an unchanged response is recognized without asking the database.
+@ApplicationScoped
+public class TableVersions {
+
+    private static final Set<String> CHANGES = Set.of("CREATE", "UPDATE", "DELETE");
+
+    // Counters start at 0 on every start and every instance, so the tags of different runs must not match
+    private volatile String epoch = newEpoch();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    // EXPIRING and EXPIRED only announce, they change no data
+    public void changed(ResourceUpdateMessage message) {
+        if (message.resourceType != null && CHANGES.contains(message.action)) {
+            changed(message.resourceType);
+        }
+    }
+
+    public void changed(String resourceType) {
+        versions.computeIfAbsent(resourceType, type -> new AtomicLong()).incrementAndGet();
+    }
+
+    // For changes that may have been missed (e.g. while the update bus was disconnected), no tag handed out so far matches
+    public void changedAll() {
+        epoch = newEpoch();
+    }
+
+    // Counters only grow, so the sum changes with every change of any of the resource types
+    public String tag(String... resourceTypes) {
+        long sum = 0;
+        for (String resourceType : resourceTypes) {
+            AtomicLong version = versions.get(resourceType);
+            sum += version == null ? 0 : version.get();
+        }
+        return epoch + "-" + sum;
+    }
+
+    private static String newEpoch() {
+        return UUID.randomUUID().toString().substring(0, 8);
+    }
+}
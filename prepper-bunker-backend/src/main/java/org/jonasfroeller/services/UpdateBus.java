@@ -0,0 +1,16 @@
+package org.jonasfroeller.services;
+
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+// Carries committed resource updates to the WebSocket clients of every backend instance, chosen at build time with
+// bunker.updates.bus: "memory" (LocalUpdateBus) when a single instance serves all clients, "postgres" (PostgresUpdateBus)
+// when several run behind a load balancer.
+public interface UpdateBus {
+
+    // Called by the notification dispatcher thread only, in commit order
+    void publish(ResourceUpdateMessage message);
+
+    // Whether this instance sends the notifications of scheduled checks (the daily expiry check). Exactly one instance
+    // should, the others only hear about them on the bus.
+    boolean sendsScheduledNotifications();
+}
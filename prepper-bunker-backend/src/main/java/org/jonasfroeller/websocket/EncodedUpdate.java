@@ -0,0 +1,19 @@
+package org.jonasfroeller.websocket;
+
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+// An update encoded once for every wire format its recipients use, then shared by all their queues.
+// Each encoding is kept as a complete one-update frame, since most frames hold a single update.
+final class EncodedUpdate {
+    final ResourceUpdateMessage message;
+    // "[{...}]", null if no recipient reads JSON
+    final String jsonFrame;
+    // CBOR array header 0x81 followed by the encoded update, null if no recipient reads CBOR. Never modified.
+    final byte[] cborFrame;
+
+    EncodedUpdate(ResourceUpdateMessage message, String jsonFrame, byte[] cborFrame) {
+        this.message = message;
+        this.jsonFrame = jsonFrame;
+        this.cborFrame = cborFrame;
+    }
+}
@@ -0,0 +1,28 @@
+package org.jonasfroeller.websocket;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Frames assembled during one flush. Sessions with the same subscriptions drain the same updates,
+// so each distinct frame is put together once and shared by all of them.
+final class FrameCache {
+    private final UpdateEncoder encoder;
+    // Keyed by the updates themselves, EncodedUpdate has identity equality
+    private final Map<List<EncodedUpdate>, String> jsonFrames = new HashMap<>();
+    private final Map<List<EncodedUpdate>, ByteBuffer> cborFrames = new HashMap<>();
+
+    FrameCache(UpdateEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    String json(List<EncodedUpdate> updates) {
+        return jsonFrames.computeIfAbsent(updates, encoder::jsonFrame);
+    }
+
+    // Every call returns its own view of the shared bytes, sending consumes the buffer's position
+    ByteBuffer cbor(List<EncodedUpdate> updates) {
+        return cborFrames.computeIfAbsent(updates, encoder::cborFrame).asReadOnlyBuffer();
+    }
+}
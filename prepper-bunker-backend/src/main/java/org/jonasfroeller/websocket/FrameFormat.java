@@ -0,0 +1,16 @@
+package org.jonasfroeller.websocket;
+
+import jakarta.websocket.Session;
+
+import java.util.List;
+
+// Wire format of a session's frames, chosen with ?format=json (default) or ?format=cbor when connecting
+enum FrameFormat {
+    JSON,  // text frames holding a JSON array of updates
+    CBOR;  // binary frames holding a CBOR array of updates, with the same fields as in JSON
+
+    static FrameFormat of(Session session) {
+        List<String> requested = session.getRequestParameterMap().get("format");
+        return requested != null && requested.contains("cbor") ? CBOR : JSON;
+    }
+}
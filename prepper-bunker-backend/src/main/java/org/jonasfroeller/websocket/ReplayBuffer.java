@@ -0,0 +1,48 @@
+package org.jonasfroeller.websocket;
+
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The most recent broadcast updates by sequence number, so a reconnecting client gets only what it missed.
+// Not thread-safe, the socket appends and reads under its broadcast lock.
+final class ReplayBuffer {
+    private final ResourceUpdateMessage[] messages;
+    private final long firstSequence;
+    private long nextSequence;
+
+    ReplayBuffer(int capacity, long firstSequence) {
+        this.messages = new ResourceUpdateMessage[capacity];
+        this.firstSequence = firstSequence;
+        this.nextSequence = firstSequence;
+    }
+
+    // Numbers the message with the next sequence number and keeps it, evicting the oldest one when full
+    void append(ResourceUpdateMessage message) {
+        message.sequence = nextSequence;
+        if (messages.length > 0) {
+            messages[(int) (nextSequence % messages.length)] = message;
+        }
+        nextSequence++;
+    }
+
+    // Every update after lastSequence, null if some of them are no longer kept (or lastSequence is not from this stream)
+    List<ResourceUpdateMessage> after(long lastSequence) {
+        long oldest = Math.max(firstSequence, nextSequence - messages.length);
+        if (lastSequence + 1 < oldest || lastSequence >= nextSequence) {
+            return null;
+        }
+
+        List<ResourceUpdateMessage> missed = new ArrayList<>((int) (nextSequence - lastSequence - 1));
+        for (long sequence = lastSequence + 1; sequence < nextSequence; sequence++) {
+            missed.add(messages[(int) (sequence % messages.length)]);
+        }
+        return missed;
+    }
+
+    // Sequence number of the latest update, firstSequence - 1 before the first one
+    long lastSequence() {
+        return nextSequence - 1;
+    }
+}
@@ -1,43 +1,369 @@
 package org.jonasfroeller.websocket;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.BackPressureFailure;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.websocket.CloseReason;
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
 import jakarta.websocket.OnOpen;
+import jakarta.websocket.SendHandler;
 import jakarta.websocket.Session;
 import jakarta.websocket.server.ServerEndpoint;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.jonasfroeller.dtos.SubscriptionMessage;
+import org.jonasfroeller.dtos.WebSocketStatisticsDTO;
+import org.jonasfroeller.websocket.TopicIndex.Topic;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+// Sends every broadcast message to the connected clients subscribed to it. Messages are collected for a short window and sent
+// as one array per frame (JSON, or CBOR with ?format=cbor), each session has a bounded queue so a slow client only ever
+// costs a fixed amount of memory. A message is serialized once per format, not once per session.
+// Clients connected with ?payload=full also get the changed resource itself (the DTO the REST API returns) and can
+// patch their state instead of reloading it.
+// Clients receive everything until they send their first SubscriptionMessage, from then on only what they subscribed to.
+// Every broadcast update gets the next sequence number, a reconnecting client resumes from the last one it received
+// and gets the missed updates from the replay buffer, or a RESYNC when they are no longer kept.
 @ServerEndpoint("/ws/updates")
 @ApplicationScoped
 public class ResourceUpdateSocket {
-    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private static final Logger LOG = Logger.getLogger(ResourceUpdateSocket.class);
+
+    // What happens to a session whose queue is full
+    public enum OverflowPolicy {
+        DROP_OLDEST,  // the oldest message makes room, the client is told to resync with the next frame
+        DISCONNECT  // the session is closed with "try again later", the client reloads and reconnects
+    }
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "bunker.updates.queue-capacity", defaultValue = "256")
+    int queueCapacity;
+
+    @ConfigProperty(name = "bunker.updates.batch-window", defaultValue = "50ms")
+    Duration batchWindow;
+
+    @ConfigProperty(name = "bunker.updates.max-batch-size", defaultValue = "100")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "bunker.updates.overflow", defaultValue = "drop-oldest")
+    OverflowPolicy overflowPolicy;
+
+    @ConfigProperty(name = "bunker.updates.replay-capacity", defaultValue = "1000")
+    int replayCapacity;
+
+    private final Map<String, SessionOutbox> outboxes = new ConcurrentHashMap<>();
+    private final TopicIndex topicIndex = new TopicIndex();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder messagesDropped = new LongAdder();
+    private final LongAdder sessionsDisconnected = new LongAdder();
+    private final LongAdder messagesReplayed = new LongAdder();
+    private final LongAdder resyncsRequired = new LongAdder();
+    // Server-sent event subscribers (GET /updates/stream), fed under the broadcast lock like the sessions
+    private final Set<Consumer<ResourceUpdateMessage>> streams = ConcurrentHashMap.newKeySet();
+    private final LongAdder streamsCutOff = new LongAdder();
+    private ScheduledExecutorService scheduler;
+    private UpdateEncoder encoder;
+    // Also the broadcast lock: numbering, keeping and queueing an update happen together, so every session
+    // receives updates in sequence order and a replay never overlaps or misses a live update
+    private ReplayBuffer replayBuffer;
+
+    @PostConstruct
+    void start() {
+        encoder = new UpdateEncoder(objectMapper);
+        // Sequences start at the startup time in microseconds, so the ones of a previous run are older than
+        // anything kept now and resuming with them asks for a resync (still below 2^53 for JavaScript clients)
+        replayBuffer = new ReplayBuffer(replayCapacity, Instant.now().toEpochMilli() * 1000);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-update-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
 
     @OnOpen
     public void onOpen(Session session) {
-        sessions.put(session.getId(), session);
+        List<String> payload = session.getRequestParameterMap().get("payload");
+        boolean fullPayload = payload != null && payload.contains("full");
+        SessionOutbox outbox = new SessionOutbox(session, FrameFormat.of(session), fullPayload, queueCapacity);
+        outboxes.put(session.getId(), outbox);
+        subscribe(outbox, Topic.ALL);
     }
 
     @OnClose
     public void onClose(Session session) {
-        sessions.remove(session.getId());
+        disconnect(session.getId());
     }
 
     @OnError
     public void onError(Session session, Throwable throwable) {
-        sessions.remove(session.getId());
+        disconnect(session.getId());
+    }
+
+    @OnMessage
+    public void onMessage(String text, Session session) {
+        SessionOutbox outbox = outboxes.get(session.getId());
+        if (outbox == null) {
+            return;
+        }
+
+        SubscriptionMessage request;
+        try {
+            request = objectMapper.readValue(text, SubscriptionMessage.class);
+        } catch (IOException e) {
+            reject(outbox, "Invalid subscription message, expected {\"action\": \"subscribe\", \"resourceType\": ..., \"storageLocationId\": ...}");
+            return;
+        }
+
+        Topic topic = new Topic(request.resourceType, request.storageLocationId);
+        if ("subscribe".equals(request.action)) {
+            if (outbox.replaceDefaultTopics()) {
+                unsubscribe(outbox, Topic.ALL);
+            }
+            subscribe(outbox, topic);
+        } else if ("unsubscribe".equals(request.action)) {
+            unsubscribe(outbox, topic);
+        } else if ("resume".equals(request.action) && request.lastSequence != null) {
+            resume(outbox, request.lastSequence);
+        } else if ("resume".equals(request.action)) {
+            reject(outbox, "lastSequence is required to resume");
+        } else {
+            reject(outbox, "Unknown action: " + request.action + ", expected \"subscribe\", \"unsubscribe\" or \"resume\"");
+        }
     }
 
     public void broadcast(ResourceUpdateMessage message) {
-        sessions.values().forEach(session -> {
-            session.getAsyncRemote().sendObject(message, result -> {
-                if (result.getException() != null) {
-                    System.err.println("Unable to send message: " + result.getException());
+        synchronized (replayBuffer) {
+            replayBuffer.append(message);
+            deliver(topicIndex.match(message.resourceType, message.storageLocationId), message);
+            streams.forEach(stream -> stream.accept(message));
+        }
+    }
+
+    // The updates of the given resource types (all if empty) and storage location (any if null), starting with the
+    // ones missed since lastSequence or, without one, with the next update. Items are only produced as the subscriber
+    // requests them, at most queue-capacity updates wait for it. A subscriber that falls further behind is cut off,
+    // its client resumes from the last update it received like after any other disconnect.
+    public Multi<ResourceUpdateMessage> stream(List<String> resourceTypes, Long storageLocationId, Long lastSequence) {
+        List<Topic> topics = resourceTypes.isEmpty() ? List.of(new Topic(null, storageLocationId))
+                : resourceTypes.stream().map(type -> new Topic(type, storageLocationId)).toList();
+        Predicate<ResourceUpdateMessage> subscribed = message -> topics.stream().anyMatch(topic -> topic.matches(message));
+
+        return Multi.createFrom().<ResourceUpdateMessage>emitter(emitter -> {
+            Consumer<ResourceUpdateMessage> stream = message -> {
+                if (subscribed.test(message)) {
+                    emitter.emit(message);
                 }
-            });
-        });
+            };
+            emitter.onTermination(() -> streams.remove(stream));
+
+            synchronized (replayBuffer) {
+                if (lastSequence != null) {
+                    List<ResourceUpdateMessage> missed = replayBuffer.after(lastSequence);
+                    List<ResourceUpdateMessage> replay = missed == null ? null
+                            : missed.stream().filter(subscribed).toList();
+                    if (replay == null || replay.size() > queueCapacity) {
+                        resyncsRequired.increment();
+                        emitter.emit(new ResourceUpdateMessage("RESYNC", null, null,
+                                "The missed updates are no longer available, reload the data"));
+                    } else {
+                        messagesReplayed.add(replay.size());
+                        replay.forEach(emitter::emit);
+                    }
+                }
+                streams.add(stream);
+            }
+        }, BackPressureStrategy.ERROR)
+                .onOverflow().buffer(queueCapacity)
+                .onFailure(BackPressureFailure.class).invoke(streamsCutOff::increment)
+                .onFailure(BackPressureFailure.class).recoverWithCompletion();
+    }
+
+    // Tells every connected client to reload, for when updates may have been missed without the replay buffer knowing
+    public void resyncAll(String reason) {
+        synchronized (replayBuffer) {
+            resyncsRequired.increment();
+            deliver(List.copyOf(outboxes.values()), new ResourceUpdateMessage("RESYNC", null, null, reason));
+        }
+    }
+
+    public WebSocketStatisticsDTO getStatistics() {
+        int queued = 0;
+        int maxDepth = 0;
+        for (SessionOutbox outbox : outboxes.values()) {
+            int depth = outbox.depth();
+            queued += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        long lastSequence;
+        synchronized (replayBuffer) {
+            lastSequence = replayBuffer.lastSequence();
+        }
+
+        return new WebSocketStatisticsDTO(outboxes.size(), queued, maxDepth, queueCapacity,
+                framesSent.sum(), messagesSent.sum(), encoder.encodings(), messagesDropped.sum(), sessionsDisconnected.sum(),
+                lastSequence, replayCapacity, messagesReplayed.sum(), resyncsRequired.sum(),
+                streams.size(), streamsCutOff.sum());
+    }
+
+    private void deliver(Collection<SessionOutbox> recipients, ResourceUpdateMessage message) {
+        if (recipients.isEmpty()) {
+            return;
+        }
+
+        // Sessions that want the changed resource get their own encoding of the update, everyone else the one
+        // without it. Updates without data (deletes, expiry, batch imports) are the same for both.
+        boolean withData = message.data != null;
+        Set<FrameFormat> summaryFormats = EnumSet.noneOf(FrameFormat.class);
+        Set<FrameFormat> fullFormats = EnumSet.noneOf(FrameFormat.class);
+        for (SessionOutbox outbox : recipients) {
+            (withData && outbox.fullPayload ? fullFormats : summaryFormats).add(outbox.format);
+        }
+        EncodedUpdate summary = summaryFormats.isEmpty() ? null
+                : encoder.encode(withData ? message.withoutData() : message, summaryFormats);
+        EncodedUpdate full = fullFormats.isEmpty() ? null : encoder.encode(message, fullFormats);
+
+        for (SessionOutbox outbox : recipients) {
+            EncodedUpdate update = withData && outbox.fullPayload ? full : summary;
+            if (!outbox.offer(update)) {
+                overflow(outbox, update);
+            }
+        }
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flushAll, batchWindow.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Replaces whatever the session has queued with the subscribed updates after lastSequence. Updates sent before
+    // the resume may arrive a second time, clients skip sequence numbers they have already seen.
+    private void resume(SessionOutbox outbox, long lastSequence) {
+        synchronized (replayBuffer) {
+            List<ResourceUpdateMessage> missed = replayBuffer.after(lastSequence);
+            List<ResourceUpdateMessage> replay = missed == null ? null : missed.stream().filter(outbox::subscribedTo).toList();
+
+            outbox.clear();
+            if (replay == null || replay.size() > queueCapacity) {
+                resyncsRequired.increment();
+                deliver(List.of(outbox), new ResourceUpdateMessage("RESYNC", null, null,
+                        "The missed updates are no longer available, reload the data"));
+                return;
+            }
+
+            messagesReplayed.add(replay.size());
+            replay.forEach(message -> deliver(List.of(outbox), message));
+        }
+    }
+
+    // Only goes to the session that sent the invalid subscription message
+    private void reject(SessionOutbox outbox, String error) {
+        deliver(List.of(outbox), new ResourceUpdateMessage("ERROR", null, null, error));
+    }
+
+    private void subscribe(SessionOutbox outbox, Topic topic) {
+        if (outbox.addTopic(topic)) {
+            topicIndex.add(topic, outbox);
+        }
+    }
+
+    private void unsubscribe(SessionOutbox outbox, Topic topic) {
+        if (outbox.removeTopic(topic)) {
+            topicIndex.remove(topic, outbox);
+        }
+    }
+
+    private void disconnect(String sessionId) {
+        SessionOutbox outbox = outboxes.remove(sessionId);
+        if (outbox != null) {
+            outbox.topics().forEach(topic -> topicIndex.remove(topic, outbox));
+        }
+    }
+
+    private void overflow(SessionOutbox outbox, EncodedUpdate message) {
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            outbox.dropOldest(message);
+            messagesDropped.increment();
+            return;
+        }
+
+        if (outboxes.remove(outbox.session.getId(), outbox)) {
+            outbox.topics().forEach(topic -> topicIndex.remove(topic, outbox));
+            messagesDropped.add(outbox.depth() + 1L);
+            sessionsDisconnected.increment();
+            // Closing waits for the close frame to be written, which is what this client is too slow for
+            scheduler.execute(() -> close(outbox.session));
+        }
+    }
+
+    private void flushAll() {
+        flushScheduled.set(false);
+        FrameCache frames = new FrameCache(encoder);
+        outboxes.values().forEach(outbox -> flush(outbox, frames));
+    }
+
+    // Sends the next frame of the session unless one is in flight, the completion of that one sends the rest
+    private void flush(SessionOutbox outbox, FrameCache frames) {
+        List<EncodedUpdate> frame = outbox.nextFrame(maxBatchSize, encoder);
+        if (frame == null) {
+            return;
+        }
+
+        SendHandler completion = result -> {
+            outbox.frameSent();
+            if (result.isOK()) {
+                framesSent.increment();
+                messagesSent.add(frame.size());
+                flush(outbox, new FrameCache(encoder));
+            } else {
+                LOG.debugf(result.getException(), "Unable to send resource updates to session %s", outbox.session.getId());
+            }
+        };
+        if (outbox.format == FrameFormat.CBOR) {
+            outbox.session.getAsyncRemote().sendBinary(frames.cbor(frame), completion);
+        } else {
+            outbox.session.getAsyncRemote().sendText(frames.json(frame), completion);
+        }
+    }
+
+    private void close(Session session) {
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER,
+                    "Too slow for the update rate, reload the data and reconnect"));
+        } catch (IOException e) {
+            LOG.debugf(e, "Unable to close session %s", session.getId());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package org.jonasfroeller.websocket;
+
+import jakarta.websocket.Session;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Messages waiting to be sent to one WebSocket session. At most one frame is in flight per session,
+// everything broadcast meanwhile queues up here and goes out together in the next frame.
+final class SessionOutbox {
+    final Session session;
+    final FrameFormat format;
+    // Connected with ?payload=full, gets the changed resource with every update
+    final boolean fullPayload;
+    private final int capacity;
+    private final ArrayDeque<EncodedUpdate> queue = new ArrayDeque<>();
+    private boolean sending;
+    // Dropped since the last frame, announced to the client with a RESYNC message
+    private long dropped;
+    private final Set<TopicIndex.Topic> topics = new HashSet<>();
+    // Subscribed to everything until the client subscribes to something itself
+    private boolean defaultTopics = true;
+
+    SessionOutbox(Session session, FrameFormat format, boolean fullPayload, int capacity) {
+        this.session = session;
+        this.format = format;
+        this.fullPayload = fullPayload;
+        this.capacity = capacity;
+    }
+
+    // false if the queue is full
+    synchronized boolean offer(EncodedUpdate message) {
+        if (queue.size() >= capacity) {
+            return false;
+        }
+        queue.addLast(message);
+        return true;
+    }
+
+    synchronized void dropOldest(EncodedUpdate message) {
+        queue.pollFirst();
+        queue.addLast(message);
+        dropped++;
+    }
+
+    // false if the session was already subscribed to the topic
+    synchronized boolean addTopic(TopicIndex.Topic topic) {
+        return topics.add(topic);
+    }
+
+    synchronized boolean removeTopic(TopicIndex.Topic topic) {
+        return topics.remove(topic);
+    }
+
+    synchronized boolean subscribedTo(ResourceUpdateMessage message) {
+        return topics.stream().anyMatch(topic -> topic.matches(message));
+    }
+
+    synchronized Set<TopicIndex.Topic> topics() {
+        return Set.copyOf(topics);
+    }
+
+    // true the first time, when the default subscription to everything is to be replaced by the client's own ones
+    synchronized boolean replaceDefaultTopics() {
+        boolean first = defaultTopics;
+        defaultTopics = false;
+        return first;
+    }
+
+    // Drops everything queued, e.g. before a replay that includes it
+    synchronized void clear() {
+        queue.clear();
+        dropped = 0;
+    }
+
+    synchronized int depth() {
+        return queue.size();
+    }
+
+    // The messages of the next frame, null if a frame is still in flight or nothing is queued
+    synchronized List<EncodedUpdate> nextFrame(int maxSize, UpdateEncoder encoder) {
+        if (sending || queue.isEmpty()) {
+            return null;
+        }
+
+        List<EncodedUpdate> frame = new ArrayList<>(Math.min(queue.size(), maxSize) + 1);
+        if (dropped > 0) {
+            frame.add(encoder.encode(new ResourceUpdateMessage("RESYNC", null, null,
+                    dropped + " updates were dropped because the connection was too slow, reload the data"), EnumSet.of(format)));
+            dropped = 0;
+        }
+        while (frame.size() < maxSize && !queue.isEmpty()) {
+            frame.add(queue.pollFirst());
+        }
+        sending = true;
+        return frame;
+    }
+
+    synchronized void frameSent() {
+        sending = false;
+    }
+}
@@ -0,0 +1,100 @@
+package org.jonasfroeller.websocket;
+
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sessions by the topics they subscribed to, so a message is only routed to the sessions interested in it.
+// Changes are serialized, lookups run lock-free against the concurrent maps.
+final class TopicIndex {
+    // resource type -> storage location -> sessions, ANY for subscriptions without that filter
+    private final Map<String, Map<Long, Set<SessionOutbox>>> sessions = new ConcurrentHashMap<>();
+
+    synchronized void add(Topic topic, SessionOutbox outbox) {
+        sessions.computeIfAbsent(topic.resourceType, type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(topic.storageLocationId, location -> ConcurrentHashMap.newKeySet())
+                .add(outbox);
+    }
+
+    synchronized void remove(Topic topic, SessionOutbox outbox) {
+        Map<Long, Set<SessionOutbox>> byLocation = sessions.get(topic.resourceType);
+        if (byLocation == null) {
+            return;
+        }
+
+        Set<SessionOutbox> subscribed = byLocation.get(topic.storageLocationId);
+        if (subscribed != null && subscribed.remove(outbox) && subscribed.isEmpty()) {
+            byLocation.remove(topic.storageLocationId);
+            if (byLocation.isEmpty()) {
+                sessions.remove(topic.resourceType);
+            }
+        }
+    }
+
+    // Every session subscribed to the message's resource type and storage location, or to any of them.
+    // A message without a storage location goes to all subscribers of its resource type, whatever location they chose.
+    Set<SessionOutbox> match(String resourceType, Long storageLocationId) {
+        Set<SessionOutbox> matched = new HashSet<>();
+        collect(matched, sessions.get(Topic.ANY_TYPE), storageLocationId);
+        if (resourceType != null) {
+            collect(matched, sessions.get(resourceType), storageLocationId);
+        }
+        return matched;
+    }
+
+    private static void collect(Set<SessionOutbox> matched, Map<Long, Set<SessionOutbox>> byLocation, Long storageLocationId) {
+        if (byLocation == null) {
+            return;
+        }
+
+        if (storageLocationId == null) {
+            byLocation.values().forEach(matched::addAll);
+            return;
+        }
+
+        Set<SessionOutbox> anyLocation = byLocation.get(Topic.ANY_LOCATION);
+        if (anyLocation != null) {
+            matched.addAll(anyLocation);
+        }
+        Set<SessionOutbox> location = byLocation.get(storageLocationId);
+        if (location != null) {
+            matched.addAll(location);
+        }
+    }
+
+    static final class Topic {
+        static final String ANY_TYPE = "";
+        static final Long ANY_LOCATION = 0L;  // storage location IDs start at 1
+        static final Topic ALL = new Topic(null, null);
+
+        final String resourceType;
+        final Long storageLocationId;
+
+        Topic(String resourceType, Long storageLocationId) {
+            this.resourceType = resourceType == null ? ANY_TYPE : resourceType;
+            this.storageLocationId = storageLocationId == null ? ANY_LOCATION : storageLocationId;
+        }
+
+        // Same rules as TopicIndex.match, for checking a single session
+        boolean matches(ResourceUpdateMessage message) {
+            return (resourceType.equals(ANY_TYPE) || resourceType.equals(message.resourceType)) &&
+                    (storageLocationId.equals(ANY_LOCATION) || message.storageLocationId == null ||
+                            storageLocationId.equals(message.storageLocationId));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Topic topic && resourceType.equals(topic.resourceType) &&
+                    storageLocationId.equals(topic.storageLocationId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceType, storageLocationId);
+        }
+    }
+}
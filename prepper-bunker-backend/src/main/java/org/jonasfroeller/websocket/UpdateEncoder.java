@@ -0,0 +1,99 @@
+package org.jonasfroeller.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serializes each update once per wire format. Frames of several updates are put together from the
+// encoded updates by copying bytes, a frame of one update is the shared encoding itself.
+final class UpdateEncoder {
+    private static final int CBOR_ARRAY = 0x80;
+    private static final int CBOR_ARRAY_UINT8_LENGTH = 0x98;
+    private static final int CBOR_ARRAY_UINT16_LENGTH = 0x99;
+
+    private final ObjectMapper jsonMapper;
+    // Writes dates of the embedded DTOs like the JSON mapper does, as ISO strings
+    private final CBORMapper cborMapper = CBORMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final LongAdder encodings = new LongAdder();
+
+    UpdateEncoder(ObjectMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    EncodedUpdate encode(ResourceUpdateMessage message, Set<FrameFormat> formats) {
+        try {
+            String jsonFrame = null;
+            byte[] cborFrame = null;
+            if (formats.contains(FrameFormat.JSON)) {
+                jsonFrame = "[" + jsonMapper.writeValueAsString(message) + "]";
+                encodings.increment();
+            }
+            if (formats.contains(FrameFormat.CBOR)) {
+                byte[] cbor = cborMapper.writeValueAsBytes(message);
+                cborFrame = new byte[cbor.length + 1];
+                cborFrame[0] = (byte) (CBOR_ARRAY | 1);
+                System.arraycopy(cbor, 0, cborFrame, 1, cbor.length);
+                encodings.increment();
+            }
+            return new EncodedUpdate(message, jsonFrame, cborFrame);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to encode resource update", e);
+        }
+    }
+
+    String jsonFrame(List<EncodedUpdate> updates) {
+        if (updates.size() == 1) {
+            return updates.getFirst().jsonFrame;
+        }
+
+        StringBuilder frame = new StringBuilder(updates.size() * 160);
+        frame.append('[');
+        for (EncodedUpdate update : updates) {
+            if (frame.length() > 1) {
+                frame.append(',');
+            }
+            frame.append(update.jsonFrame, 1, update.jsonFrame.length() - 1);
+        }
+        return frame.append(']').toString();
+    }
+
+    ByteBuffer cborFrame(List<EncodedUpdate> updates) {
+        if (updates.size() == 1) {
+            return ByteBuffer.wrap(updates.getFirst().cborFrame);
+        }
+
+        int size = updates.size();
+        int length = size < 24 ? 1 : size < 256 ? 2 : 3;
+        for (EncodedUpdate update : updates) {
+            length += update.cborFrame.length - 1;
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        if (size < 24) {
+            frame.put((byte) (CBOR_ARRAY | size));
+        } else if (size < 256) {
+            frame.put((byte) CBOR_ARRAY_UINT8_LENGTH).put((byte) size);
+        } else {
+            frame.put((byte) CBOR_ARRAY_UINT16_LENGTH).putShort((short) size);
+        }
+        for (EncodedUpdate update : updates) {
+            frame.put(update.cborFrame, 1, update.cborFrame.length - 1);
+        }
+        return frame.flip();
+    }
+
+    long encodings() {
+        return encodings.sum();
+    }
+}
@@ -0,0 +1,141 @@
+-- Schema as mapped by the entities in org.jonasfroeller.models.
+-- IDs come from one sequence per table, allocated in blocks of 50 (Hibernate's pooled optimizer).
+
+create sequence storage_location_SEQ start with 1 increment by 50;
+create sequence fuel_type_SEQ start with 1 increment by 50;
+create sequence ammunition_type_SEQ start with 1 increment by 50;
+create sequence weapon_SEQ start with 1 increment by 50;
+create sequence ammunition_stock_SEQ start with 1 increment by 50;
+create sequence food_SEQ start with 1 increment by 50;
+create sequence drink_SEQ start with 1 increment by 50;
+create sequence medication_SEQ start with 1 increment by 50;
+create sequence fuel_SEQ start with 1 increment by 50;
+create sequence battery_SEQ start with 1 increment by 50;
+create sequence generator_SEQ start with 1 increment by 50;
+
+-- Lagerorte
+create table storage_location
+(
+    id          bigint not null,
+    name        varchar(255),
+    description varchar(255),
+    primary key (id)
+);
+
+-- Treibstofftypen
+create table fuel_type
+(
+    id   bigint not null,
+    name varchar(255),
+    primary key (id)
+);
+
+-- Munitionstypen
+create table ammunition_type
+(
+    id      bigint not null,
+    caliber varchar(255),
+    type    varchar(255),
+    primary key (id)
+);
+
+-- Waffen
+create table weapon
+(
+    id                  bigint  not null,
+    type                varchar(255),
+    model               varchar(255),
+    quantity            integer not null,
+    ammunition_type_id  bigint,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_weapon_ammunition_type foreign key (ammunition_type_id) references ammunition_type (id),
+    constraint fk_weapon_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Munitionsbestände
+create table ammunition_stock
+(
+    id                  bigint  not null,
+    quantity            integer not null,
+    ammunition_type_id  bigint,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_ammunition_stock_ammunition_type foreign key (ammunition_type_id) references ammunition_type (id),
+    constraint fk_ammunition_stock_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Essen
+create table food
+(
+    id                  bigint           not null,
+    type                varchar(255),
+    quantity            double precision not null,
+    expiration_date     date,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_food_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Getränke
+create table drink
+(
+    id                  bigint           not null,
+    type                varchar(255),
+    quantity            double precision not null,
+    expiration_date     date,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_drink_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Medikamente
+create table medication
+(
+    id                  bigint  not null,
+    name                varchar(255),
+    quantity            integer not null,
+    expiration_date     date,
+    purpose             varchar(255),
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_medication_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Treibstoff
+create table fuel
+(
+    id                  bigint           not null,
+    quantity            double precision not null,
+    fuel_type_id        bigint,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_fuel_fuel_type foreign key (fuel_type_id) references fuel_type (id),
+    constraint fk_fuel_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Batterien
+create table battery
+(
+    id                  bigint           not null,
+    type                varchar(255),
+    capacity            double precision not null,
+    quantity            integer          not null,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_battery_storage_location foreign key (storage_location_id) references storage_location (id)
+);
+
+-- Generatoren
+create table generator
+(
+    id                  bigint           not null,
+    type                varchar(255),
+    power               double precision not null,
+    status              varchar(255),
+    fuel_type_id        bigint,
+    storage_location_id bigint,
+    primary key (id),
+    constraint fk_generator_fuel_type foreign key (fuel_type_id) references fuel_type (id),
+    constraint fk_generator_storage_location foreign key (storage_location_id) references storage_location (id)
+);
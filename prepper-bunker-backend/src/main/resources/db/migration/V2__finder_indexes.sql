@@ -0,0 +1,29 @@
+-- Indexes for the repository finders. Every finder pages by (sort, id) with id as tie-breaker,
+-- so the filtered column is paired with id and a page is a single index range scan.
+-- "if not exists": databases created by Hibernate before the migrations were baselined may differ.
+
+-- Lookups by storage location (findByStorageLocation, and deleting a storage location)
+create index if not exists idx_weapon_storage_location on weapon (storage_location_id, id);
+create index if not exists idx_ammunition_stock_storage_location on ammunition_stock (storage_location_id, id);
+create index if not exists idx_food_storage_location on food (storage_location_id, id);
+create index if not exists idx_drink_storage_location on drink (storage_location_id, id);
+create index if not exists idx_medication_storage_location on medication (storage_location_id, id);
+create index if not exists idx_fuel_storage_location on fuel (storage_location_id, id);
+create index if not exists idx_battery_storage_location on battery (storage_location_id, id);
+create index if not exists idx_generator_storage_location on generator (storage_location_id, id);
+
+-- Lookups and totals by type
+create index if not exists idx_weapon_ammunition_type on weapon (ammunition_type_id, id);
+create index if not exists idx_ammunition_stock_ammunition_type on ammunition_stock (ammunition_type_id, id);
+create index if not exists idx_fuel_fuel_type on fuel (fuel_type_id, id);
+create index if not exists idx_generator_fuel_type on generator (fuel_type_id, id);
+create index if not exists idx_battery_type on battery (type, id);
+
+-- Expired / expiring soon
+create index if not exists idx_food_expiration_date on food (expiration_date, id);
+create index if not exists idx_drink_expiration_date on drink (expiration_date, id);
+create index if not exists idx_medication_expiration_date on medication (expiration_date, id);
+
+-- Status and purpose filters
+create index if not exists idx_generator_status on generator (status, id);
+create index if not exists idx_medication_purpose on medication (purpose, id);
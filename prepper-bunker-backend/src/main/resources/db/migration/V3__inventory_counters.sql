@@ -0,0 +1,33 @@
+-- Running totals per resource, type and storage location, kept up to date by InventoryCounterService
+-- in the transaction of every write. type_key is the type ID (fuel, ammunition) or the type name (batteries).
+-- Items without a type or storage location are counted under '' and 0.
+
+-- Bestandszähler
+create table inventory_counter
+(
+    resource_type       varchar(64)      not null,
+    type_key            varchar(255)     not null,
+    storage_location_id bigint           not null,
+    total_quantity      double precision not null,
+    item_count          bigint           not null,
+    primary key (resource_type, type_key, storage_location_id)
+);
+
+-- Counters of the existing inventory
+insert into inventory_counter (resource_type, type_key, storage_location_id, total_quantity, item_count)
+select 'AmmunitionStock', coalesce(cast(ammunition_type_id as varchar(255)), ''), coalesce(storage_location_id, 0),
+       sum(quantity), count(*)
+from ammunition_stock
+group by coalesce(cast(ammunition_type_id as varchar(255)), ''), coalesce(storage_location_id, 0);
+
+insert into inventory_counter (resource_type, type_key, storage_location_id, total_quantity, item_count)
+select 'Fuel', coalesce(cast(fuel_type_id as varchar(255)), ''), coalesce(storage_location_id, 0),
+       sum(quantity), count(*)
+from fuel
+group by coalesce(cast(fuel_type_id as varchar(255)), ''), coalesce(storage_location_id, 0);
+
+insert into inventory_counter (resource_type, type_key, storage_location_id, total_quantity, item_count)
+select 'Battery', coalesce(type, ''), coalesce(storage_location_id, 0),
+       sum(quantity), count(*)
+from battery
+group by coalesce(type, ''), coalesce(storage_location_id, 0);
@@ -1,118 +1,4 @@
-/* -- Lagerorte
-CREATE TABLE storage_location
-(
-    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    name        VARCHAR(255),
-    description VARCHAR(255)
-);
-
--- Munitionstypen
-CREATE TABLE ammunition_type
-(
-    id      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    caliber VARCHAR(255),
-    type    VARCHAR(255)
-);
-
--- Waffen
-CREATE TABLE weapon
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    type                VARCHAR(255),
-    model               VARCHAR(255),
-    quantity            INT,
-    ammunition_type_id  BIGINT,
-    storage_location_id BIGINT,
-    FOREIGN KEY (ammunition_type_id) REFERENCES ammunition_type (id),
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Munitionsbestände
-CREATE TABLE ammunition_stock
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    ammunition_type_id  BIGINT,
-    quantity            INT,
-    storage_location_id BIGINT,
-    FOREIGN KEY (ammunition_type_id) REFERENCES ammunition_type (id),
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Getränke
-CREATE TABLE drink
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    type                VARCHAR(255),
-    quantity DOUBLE,
-    expiration_date     DATE,
-    storage_location_id BIGINT,
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Essen
-CREATE TABLE food
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    type                VARCHAR(255),
-    quantity DOUBLE,
-    expiration_date     DATE,
-    storage_location_id BIGINT,
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Medikamente
-CREATE TABLE medication
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    name                VARCHAR(255),
-    quantity            INT,
-    expiration_date     DATE,
-    purpose             VARCHAR(255),
-    storage_location_id BIGINT,
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Treibstofftypen
-CREATE TABLE fuel_type
-(
-    id   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    name VARCHAR(255)
-);
-
--- Treibstoff
-CREATE TABLE fuel
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    fuel_type_id        BIGINT,
-    quantity DOUBLE,
-    storage_location_id BIGINT,
-    FOREIGN KEY (fuel_type_id) REFERENCES fuel_type (id),
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Batterien
-CREATE TABLE battery
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    type                VARCHAR(255),
-    capacity DOUBLE,
-    quantity            INT,
-    storage_location_id BIGINT,
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-);
-
--- Generatoren
-CREATE TABLE generator
-(
-    id                  BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    type                VARCHAR(255),
-    power DOUBLE,
-    fuel_type_id        BIGINT,
-    status              VARCHAR(255),
-    storage_location_id BIGINT,
-    FOREIGN KEY (fuel_type_id) REFERENCES fuel_type (id),
-    FOREIGN KEY (storage_location_id) REFERENCES storage_location (id)
-); */
+-- Sample data only, the schema is created by the migrations in db/migration
 
 -- Beispieldaten einfügen
 INSERT INTO storage_location (id, name, description)
@@ -0,0 +1,23 @@
+package org.jonasfroeller;
+
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Creates the rows a test needs through the REST API, the way a client would
+public final class ApiFixtures {
+
+    private ApiFixtures() {
+    }
+
+    // Posts body to path and returns the ID of the created resource, fails the test unless it was created
+    public static long create(String path, Map<String, Object> body) {
+        Response response = given().contentType(ContentType.JSON).body(body).post(path);
+        assertEquals(201, response.statusCode(), path + ": " + response.asString());
+        return response.jsonPath().getLong("id");
+    }
+}
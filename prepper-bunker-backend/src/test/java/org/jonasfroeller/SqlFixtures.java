@@ -0,0 +1,62 @@
+package org.jonasfroeller;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rows a test writes with plain SQL, bypassing the API (e.g. dates the API rejects, or many rows at once).
+// Tests share one application and database, so every test deletes its rows again with deleteAll in @AfterEach.
+public class SqlFixtures {
+    // Far above the IDs the sequences hand out, so these rows never collide with rows created through the API
+    private static final AtomicLong NEXT_ID = new AtomicLong(1_000_000_000L);
+
+    private final DataSource dataSource;
+    // {table, id} in insertion order
+    private final List<Object[]> inserted = new ArrayList<>();
+
+    public SqlFixtures(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // An ID no other row uses, also for items that only exist in memory
+    public static long nextId() {
+        return NEXT_ID.getAndIncrement();
+    }
+
+    // Inserts a row with a new ID and returns it. columns lists the other columns, values are bound in their order.
+    public long insert(String table, String columns, Object... values) throws SQLException {
+        long id = nextId();
+        String placeholders = ", ?".repeat(values.length);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement(
+                     "insert into " + table + " (id, " + columns + ") values (?" + placeholders + ")")) {
+            insert.setLong(1, id);
+            for (int i = 0; i < values.length; i++) {
+                insert.setObject(i + 2, values[i]);
+            }
+            insert.executeUpdate();
+        }
+        inserted.add(new Object[]{table, id});
+        return id;
+    }
+
+    // Deletes the inserted rows, the last inserted first, so rows referencing others go before them
+    public void deleteAll() throws SQLException {
+        List<Object[]> rows = new ArrayList<>(inserted);
+        Collections.reverse(rows);
+        try (Connection connection = dataSource.getConnection()) {
+            for (Object[] row : rows) {
+                try (PreparedStatement delete = connection.prepareStatement("delete from " + row[0] + " where id = ?")) {
+                    delete.setLong(1, (Long) row[1]);
+                    delete.executeUpdate();
+                }
+            }
+        }
+        inserted.clear();
+    }
+}
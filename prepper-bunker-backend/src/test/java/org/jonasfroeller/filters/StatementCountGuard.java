@@ -0,0 +1,77 @@
+package org.jonasfroeller.filters;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.Optional;
+
+// Guard against N+1 selects in the tests: reports the SQL statements a request prepared in the X-Statement-Count
+// header and fails it with 500 if they exceed bunker.query-guard.max-statements. Only active when that property is set
+// (test profile) and Hibernate statistics are enabled. Statistics are global, so counts are only exact for sequential requests.
+@Provider
+public class StatementCountGuard implements ContainerRequestFilter, ContainerResponseFilter {
+    public static final String STATEMENT_COUNT_HEADER = "X-Statement-Count";
+    private static final String START_COUNT = StatementCountGuard.class.getName() + ".startCount";
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @ConfigProperty(name = "bunker.query-guard.max-statements")
+    Optional<Long> maxStatements;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        Statistics statistics = statistics();
+        if (statistics != null) {
+            requestContext.setProperty(START_COUNT, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Statistics statistics = statistics();
+        Object startCount = requestContext.getProperty(START_COUNT);
+        if (statistics == null || startCount == null) {
+            return;
+        }
+
+        long statementCount = statistics.getPrepareStatementCount() - (Long) startCount;
+        responseContext.getHeaders().putSingle(STATEMENT_COUNT_HEADER, statementCount);
+        if (statementCount > maxStatements.get()) {
+            responseContext.setStatus(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            responseContext.setEntity(new ErrorResponse(requestContext.getMethod() + " " +
+                            requestContext.getUriInfo().getPath() + " issued " + statementCount +
+                            " SQL statements, the limit is " + maxStatements.get() + "."),
+                    null, MediaType.APPLICATION_JSON_TYPE);
+        }
+    }
+
+    private Statistics statistics() {
+        if (maxStatements.isEmpty()) {
+            return null;
+        }
+
+        Statistics statistics = sessionFactory.getStatistics();
+        return statistics.isStatisticsEnabled() ? statistics : null;
+    }
+
+    public static class ErrorResponse {
+        public String error;
+
+        public ErrorResponse(String error) {
+            this.error = error;
+        }
+
+        public ErrorResponse() {
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.jonasfroeller.repositories;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.jonasfroeller.SqlFixtures;
+import org.jonasfroeller.dtos.Page;
+import org.jonasfroeller.dtos.PageRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The filtered finders page through the indexes of V2__finder_indexes.sql: runs every finder for its first page and
+// the page after the cursor, explains the select Hibernate generated and checks the plan reads the finder's index.
+@QuarkusTest
+public class FinderIndexTest {
+    private static final int ROWS = 200;
+    private static final int PAGE_SIZE = 5;
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    WeaponRepository weaponRepository;
+    @Inject
+    AmmunitionStockRepository ammunitionStockRepository;
+    @Inject
+    FoodRepository foodRepository;
+    @Inject
+    DrinkRepository drinkRepository;
+    @Inject
+    MedicationRepository medicationRepository;
+    @Inject
+    FuelRepository fuelRepository;
+    @Inject
+    BatteryRepository batteryRepository;
+    @Inject
+    GeneratorRepository generatorRepository;
+
+    private SqlFixtures rows;
+    private final long[] locations = new long[10];
+    private final long[] fuelTypes = new long[10];
+    private final long[] ammunitionTypes = new long[10];
+
+    @BeforeEach
+    public void seed() throws SQLException {
+        rows = new SqlFixtures(dataSource);
+        // Spread over ten locations, types, statuses and purposes, so every filter selects a tenth of the rows
+        for (int i = 0; i < 10; i++) {
+            locations[i] = rows.insert("storage_location", "name", "Index " + i);
+            fuelTypes[i] = rows.insert("fuel_type", "name", "Index " + i);
+            ammunitionTypes[i] = rows.insert("ammunition_type", "caliber, type", "9mm", "Index " + i);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            long location = locations[i % 10];
+            // Dates from 100 days ago to 100 days ahead
+            LocalDate date = LocalDate.now().plusDays(i - ROWS / 2);
+            rows.insert("weapon", "type, model, quantity, ammunition_type_id, storage_location_id",
+                    "Pistol", "P226", 1, ammunitionTypes[i % 10], location);
+            rows.insert("ammunition_stock", "quantity, ammunition_type_id, storage_location_id",
+                    50, ammunitionTypes[i % 10], location);
+            rows.insert("food", "type, quantity, expiration_date, storage_location_id", "Rice", 2, date, location);
+            rows.insert("drink", "type, quantity, expiration_date, storage_location_id", "Water", 1.5, date, location);
+            rows.insert("medication", "name, quantity, expiration_date, purpose, storage_location_id",
+                    "Ibuprofen", 20, date, "purpose " + i % 10, location);
+            rows.insert("fuel", "quantity, fuel_type_id, storage_location_id", 20, fuelTypes[i % 10], location);
+            rows.insert("battery", "type, capacity, quantity, storage_location_id", "type " + i % 10, 2.5, 10, location);
+            rows.insert("generator", "type, power, fuel_type_id, status, storage_location_id",
+                    "Diesel generator", 5, fuelTypes[i % 10], "status " + i % 10, location);
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("analyze");
+        }
+    }
+
+    @AfterEach
+    public void deleteRows() throws SQLException {
+        rows.deleteAll();
+    }
+
+    @Test
+    public void storageLocationFindersUseTheirIndexes() {
+        assertAll(
+                () -> assertUsesIndex("idx_weapon_storage_location", page -> weaponRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_ammunition_stock_storage_location", page -> ammunitionStockRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_food_storage_location", page -> foodRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_drink_storage_location", page -> drinkRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_medication_storage_location", page -> medicationRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_fuel_storage_location", page -> fuelRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_battery_storage_location", page -> batteryRepository.findByStorageLocation(locations[0], page)),
+                () -> assertUsesIndex("idx_generator_storage_location", page -> generatorRepository.findByStorageLocation(locations[0], page))
+        );
+    }
+
+    @Test
+    public void typeFindersUseTheirIndexes() {
+        assertAll(
+                () -> assertUsesIndex("idx_fuel_fuel_type", page -> fuelRepository.findByFuelType(fuelTypes[0], page)),
+                () -> assertUsesIndex("idx_generator_fuel_type", page -> generatorRepository.findByFuelType(fuelTypes[0], page)),
+                () -> assertUsesIndex("idx_battery_type", page -> batteryRepository.findByType("type 0", page))
+        );
+    }
+
+    @Test
+    public void statusAndPurposeFindersUseTheirIndexes() {
+        assertAll(
+                () -> assertUsesIndex("idx_generator_status", page -> generatorRepository.findByStatus("status 0", page)),
+                () -> assertUsesIndex("idx_medication_purpose", page -> medicationRepository.findByPurpose("purpose 0", page))
+        );
+    }
+
+    // A date range does not come out of (expiration_date, id) in id order, so lists sorted by id may as well be read
+    // along the primary key. Sorted by date, they are ranges of the index.
+    @Test
+    public void expiryFindersUseTheirIndexes() {
+        assertAll(
+                () -> assertUsesIndex("idx_food_expiration_date", "expirationDate", foodRepository::findExpiredItems),
+                () -> assertUsesIndex("idx_food_expiration_date", "expirationDate", foodRepository::findItemsExpiringSoon),
+                () -> assertUsesIndex("idx_drink_expiration_date", "expirationDate", drinkRepository::findExpiredItems),
+                () -> assertUsesIndex("idx_drink_expiration_date", "expirationDate", drinkRepository::findItemsExpiringSoon),
+                () -> assertUsesIndex("idx_medication_expiration_date", "expirationDate", medicationRepository::findExpiredItems),
+                () -> assertUsesIndex("idx_medication_expiration_date", "expirationDate", medicationRepository::findItemsExpiringSoon)
+        );
+    }
+
+    private void assertUsesIndex(String index, Function<PageRequest, Page<?>> finder) throws SQLException {
+        assertUsesIndex(index, null, finder);
+    }
+
+    // Explains the select of the first page and of the page after its cursor
+    private void assertUsesIndex(String index, String sort, Function<PageRequest, Page<?>> finder) throws SQLException {
+        PageRequest first = new PageRequest();
+        first.limit = PAGE_SIZE;
+        first.sort = sort;
+        Page<?> firstPage = assertExplainedPlanUses(index, first, finder);
+        assertNotNull(firstPage.nextCursor, index + ": the seeded rows do not fill more than one page");
+
+        PageRequest next = new PageRequest();
+        next.limit = PAGE_SIZE;
+        next.sort = sort;
+        next.after = firstPage.nextCursor;
+        assertExplainedPlanUses(index, next, finder);
+    }
+
+    private Page<?> assertExplainedPlanUses(String index, PageRequest request, Function<PageRequest, Page<?>> finder)
+            throws SQLException {
+        SqlRecorder.start();
+        Page<?> page;
+        List<String> statements;
+        try {
+            page = QuarkusTransaction.requiringNew().call(() -> finder.apply(request));
+        } finally {
+            statements = SqlRecorder.stop();
+        }
+
+        assertEquals(1, statements.size(), index + ": expected a single select, got " + statements);
+        String plan = explain(statements.get(0)).toLowerCase(Locale.ROOT);
+        // H2 creates an index on (foreign key column) for every foreign key constraint, e.g. fk_weapon_storage_location
+        // next to idx_weapon_storage_location, and picks either of them for the same cost. PostgreSQL has only ours.
+        String foreignKeyIndex = "public.fk_" + index.substring("idx_".length()) + "_index_";
+        assertTrue(plan.contains("public." + index + ":") || plan.contains(foreignKeyIndex),
+                index + " is not used" + (request.after == null ? "" : " after the cursor") + ":\n" + plan);
+        return page;
+    }
+
+    private String explain(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("explain " + sql);
+             ResultSet plan = explain.executeQuery()) {
+            StringBuilder lines = new StringBuilder();
+            while (plan.next()) {
+                lines.append(plan.getString(1)).append('\n');
+            }
+            return lines.toString();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.jonasfroeller.repositories;
+
+import io.quarkus.hibernate.orm.PersistenceUnitExtension;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Records the SQL Hibernate prepares on the current thread between start() and stop(), so tests can explain it
+@PersistenceUnitExtension
+public class SqlRecorder implements StatementInspector {
+    private static final ThreadLocal<List<String>> recorded = new ThreadLocal<>();
+
+    public static void start() {
+        recorded.set(new ArrayList<>());
+    }
+
+    public static List<String> stop() {
+        List<String> statements = recorded.get();
+        recorded.remove();
+        return statements == null ? List.of() : statements;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = recorded.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+}
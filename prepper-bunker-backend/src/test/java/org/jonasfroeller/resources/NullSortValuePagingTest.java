@@ -0,0 +1,93 @@
+package org.jonasfroeller.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.jonasfroeller.ApiFixtures.create;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Imports and restores may leave perishables without an expiration date. Paging by that date has to go
+// through them: after the dated rows ascending, before them descending, with cursors that point at them.
+@QuarkusTest
+public class NullSortValuePagingTest {
+    private static final int PAGE_SIZE = 2;
+
+    @Inject
+    DataSource dataSource;
+
+    private final List<Long> food = new ArrayList<>();
+
+    @AfterEach
+    public void deleteFood() {
+        food.forEach(id -> given().delete("/food/" + id));
+    }
+
+    @Test
+    public void pagesThroughRowsWithoutExpirationDate() throws SQLException {
+        long location = create("/storage-locations", Map.of("name", "Undated shelf"));
+        List<Long> dated = new ArrayList<>();
+        List<Long> undated = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            dated.add(createFood(location, LocalDate.now().plusDays(10 + i)));
+            undated.add(createFood(location, LocalDate.now().plusDays(10)));
+        }
+        clearExpirationDates(undated);
+
+        List<Long> ascending = new ArrayList<>(dated);
+        ascending.addAll(undated);
+        assertEquals(ascending, readAllPages(location, "expirationDate"));
+
+        List<Long> descending = new ArrayList<>(undated);
+        descending.sort(Comparator.reverseOrder());
+        descending.addAll(dated.reversed());
+        assertEquals(descending, readAllPages(location, "-expirationDate"));
+    }
+
+    private List<Long> readAllPages(long location, String sort) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            var request = given().queryParam("sort", sort).queryParam("limit", PAGE_SIZE);
+            if (cursor != null) {
+                request.queryParam("after", cursor);
+            }
+            Response page = request.get("/food/by-location/" + location);
+            assertEquals(200, page.statusCode(), sort + " after " + cursor + ": " + page.asString());
+            ids.addAll(page.jsonPath().getList("id", Long.class));
+            cursor = page.header(Pages.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+        return ids;
+    }
+
+    private long createFood(long location, LocalDate expirationDate) {
+        long id = create("/food", Map.of("type", "Rice", "quantity", 1.0,
+                "expirationDate", expirationDate.toString(), "storageLocationId", location));
+        food.add(id);
+        return id;
+    }
+
+    // The API requires an expiration date
+    private void clearExpirationDates(List<Long> ids) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement update = connection.prepareStatement("update food set expiration_date = null where id = ?")) {
+            for (long id : ids) {
+                update.setLong(1, id);
+                update.executeUpdate();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.jonasfroeller.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.jonasfroeller.ApiFixtures.create;
+import static org.hamcrest.Matchers.equalTo;
+
+// Whole-number quantities are int columns, an adjustment past their range is rejected and leaves the item unchanged
+@QuarkusTest
+public class QuantityAdjustmentTest {
+
+    @Test
+    public void adjustmentsStayWithinTheColumnRange() {
+        long location = create("/storage-locations", Map.of("name", "Adjustment shelf"));
+        long ammunitionType = create("/ammunition-types", Map.of("caliber", "9mm", "type", "Adjustment FMJ"));
+        assertAdjustments("/batteries/" + create("/batteries",
+                Map.of("type", "Adjustment AA", "capacity", 2.5, "quantity", 10, "storageLocationId", location)));
+        assertAdjustments("/ammunition-stocks/" + create("/ammunition-stocks",
+                Map.of("ammunitionTypeId", ammunitionType, "quantity", 10, "storageLocationId", location)));
+        assertAdjustments("/weapons/" + create("/weapons", Map.of("type", "Pistol", "model", "P226", "quantity", 10,
+                "ammunitionTypeId", ammunitionType, "storageLocationId", location)));
+        assertAdjustments("/medications/" + create("/medications", Map.of("name", "Ibuprofen", "quantity", 10,
+                "expirationDate", "2099-01-01", "purpose", "pain", "storageLocationId", location)));
+    }
+
+    private static void assertAdjustments(String item) {
+        adjust(item, Integer.MAX_VALUE).then().statusCode(400);
+        adjust(item, -11).then().statusCode(409);
+        adjust(item, Integer.MAX_VALUE - 10).then().statusCode(200).body("quantity", equalTo(Integer.MAX_VALUE));
+        adjust(item, 1).then().statusCode(400);
+        given().get(item).then().statusCode(200).body("quantity", equalTo(Integer.MAX_VALUE));
+    }
+
+    private static Response adjust(String item, long delta) {
+        return given().contentType(ContentType.JSON).body(Map.of("delta", delta)).post(item + "/adjust");
+    }
+}
@@ -0,0 +1,147 @@
+package org.jonasfroeller.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.jonasfroeller.services.ExpiryIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.jonasfroeller.ApiFixtures.create;
+import static org.jonasfroeller.filters.StatementCountGuard.STATEMENT_COUNT_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every list and detail endpoint, read with several rows per storage location, has to get by with a constant
+// number of SQL statements. N+1 selects would grow with the rows and blow the budget.
+@QuarkusTest
+public class StatementBudgetTest {
+    // One joined select, the count for includeTotal and a lookup of the referenced row (e.g. the storage location)
+    private static final int MAX_STATEMENTS = 3;
+    // One aggregate query per resource type
+    private static final int MAX_TOTALS_STATEMENTS = 8;
+    private static final int ROWS_PER_LOCATION = 4;
+
+    // Ids of the seeded rows, by placeholder
+    private static final Map<String, Long> ids = new HashMap<>();
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @BeforeEach
+    public void seed() throws SQLException {
+        if (!ids.isEmpty()) {
+            return;
+        }
+
+        long cellar = create("/storage-locations", Map.of("name", "Budget cellar", "description", "Statement budget"));
+        long garage = create("/storage-locations", Map.of("name", "Budget garage", "description", "Statement budget"));
+        long diesel = create("/fuel-types", Map.of("name", "Budget diesel"));
+        long nineMm = create("/ammunition-types", Map.of("caliber", "9mm", "type", "Budget FMJ"));
+        ids.put("location", cellar);
+        ids.put("fuelType", diesel);
+        ids.put("ammunitionType", nineMm);
+
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 2 * ROWS_PER_LOCATION; i++) {
+            long location = i % 2 == 0 ? cellar : garage;
+            String expirationDate = today.plusDays(i + 1).toString();
+
+            ids.put("fuel", create("/fuel", Map.of("fuelTypeId", diesel, "quantity", 20.0 + i, "storageLocationId", location)));
+            ids.put("ammunitionStock", create("/ammunition-stocks",
+                    Map.of("ammunitionTypeId", nineMm, "quantity", 50 + i, "storageLocationId", location)));
+            ids.put("battery", create("/batteries",
+                    Map.of("type", "AA", "capacity", 2.5, "quantity", 10 + i, "storageLocationId", location)));
+            ids.put("drink", create("/drinks",
+                    Map.of("type", "Water", "quantity", 1.5, "expirationDate", expirationDate, "storageLocationId", location)));
+            ids.put("food", create("/food",
+                    Map.of("type", "Rice", "quantity", 2.0, "expirationDate", expirationDate, "storageLocationId", location)));
+            ids.put("generator", create("/generators", Map.of("type", "Diesel generator", "power", 5.0,
+                    "fuelTypeId", diesel, "status", "ready", "storageLocationId", location)));
+            ids.put("medication", create("/medications", Map.of("name", "Ibuprofen", "quantity", 20,
+                    "expirationDate", expirationDate, "purpose", "pain", "storageLocationId", location)));
+            ids.put("weapon", create("/weapons", Map.of("type", "Pistol", "model", "P226", "quantity", 1,
+                    "ammunitionTypeId", nineMm, "storageLocationId", location)));
+
+            // Half of the perishables are expired, the other half expires within the month.
+            // The API only accepts future expiration dates.
+            if (i % 4 < 2) {
+                expire("drink", ids.get("drink"));
+                expire("food", ids.get("food"));
+                expire("medication", ids.get("medication"));
+            }
+        }
+        expiryIndex.reload();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "/storage-locations", "/storage-locations/{location}",
+            "/fuel-types", "/fuel-types/{fuelType}",
+            "/ammunition-types", "/ammunition-types/{ammunitionType}",
+            "/fuel", "/fuel/{fuel}", "/fuel/by-location/{location}", "/fuel/by-type/{fuelType}",
+            "/fuel/total-by-type/{fuelType}",
+            "/ammunition-stocks", "/ammunition-stocks/{ammunitionStock}", "/ammunition-stocks/by-location/{location}",
+            "/ammunition-stocks/total/{ammunitionType}",
+            "/batteries", "/batteries/{battery}", "/batteries/by-location/{location}", "/batteries/by-type/AA",
+            "/batteries/total-by-type/AA",
+            "/drinks", "/drinks/{drink}", "/drinks/by-location/{location}", "/drinks/expired", "/drinks/expiring-soon",
+            "/food", "/food/{food}", "/food/by-location/{location}", "/food/expired", "/food/expiring-soon",
+            "/generators", "/generators/{generator}", "/generators/by-location/{location}",
+            "/generators/by-fuel-type/{fuelType}", "/generators/by-status/ready",
+            "/medications", "/medications/{medication}", "/medications/by-location/{location}",
+            "/medications/by-purpose/pain", "/medications/expired", "/medications/expiring-soon",
+            "/weapons", "/weapons/{weapon}", "/weapons/by-location/{location}"
+    })
+    public void staysWithinStatementBudget(String endpoint) {
+        String path = endpoint;
+        for (Map.Entry<String, Long> id : ids.entrySet()) {
+            path = path.replace("{" + id.getKey() + "}", id.getValue().toString());
+        }
+
+        assertStatementBudget(given().accept(ContentType.JSON).queryParam("includeTotal", true).get(path),
+                path, MAX_STATEMENTS);
+    }
+
+    @Test
+    public void inventoryTotalsStayWithinStatementBudget() {
+        for (String groupBy : new String[]{"", "type", "location", "type,location"}) {
+            assertStatementBudget(given().accept(ContentType.JSON).queryParam("groupBy", groupBy).get("/inventory/totals"),
+                    "/inventory/totals?groupBy=" + groupBy, MAX_TOTALS_STATEMENTS);
+        }
+    }
+
+    private static void assertStatementBudget(Response response, String path, int budget) {
+        assertEquals(200, response.statusCode(), path + ": " + response.asString());
+        String statementCount = response.header(STATEMENT_COUNT_HEADER);
+        assertNotNull(statementCount, path + " did not report its statement count");
+        assertTrue(Long.parseLong(statementCount) <= budget,
+                path + " issued " + statementCount + " SQL statements, the budget is " + budget);
+    }
+
+    private void expire(String table, long id) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement update = connection.prepareStatement(
+                     "update " + table + " set expiration_date = ? where id = ?")) {
+            update.setObject(1, LocalDate.now().minusDays(id % 30 + 1));
+            update.setLong(2, id);
+            update.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.jonasfroeller.resources;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.Response;
+import jakarta.inject.Inject;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.repositories.FuelRepository;
+import org.jonasfroeller.repositories.InvalidPageRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.jonasfroeller.ApiFixtures.create;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// NDJSON lists start writing their 200 before the rows are read, so invalid paging parameters have to be
+// rejected before that, with the same 400 the JSON lists answer
+@QuarkusTest
+public class StreamedPageTest {
+
+    @Inject
+    Pages pages;
+
+    @Inject
+    FuelRepository fuelRepository;
+
+    @Test
+    public void streamsTheRows() {
+        long location = create("/storage-locations", Map.of("name", "Stream shelf"));
+        long diesel = create("/fuel-types", Map.of("name", "Stream diesel"));
+        for (int i = 0; i < 3; i++) {
+            create("/fuel", Map.of("fuelTypeId", diesel, "quantity", 10.0 + i, "storageLocationId", location));
+        }
+
+        Response all = given().accept(PageRequest.APPLICATION_NDJSON).get("/fuel/by-location/" + location);
+        assertEquals(200, all.statusCode(), all.asString());
+        assertEquals(3, all.asString().lines().count());
+
+        Response limited = given().accept(PageRequest.APPLICATION_NDJSON).queryParam("limit", 2)
+                .get("/fuel/by-location/" + location);
+        assertEquals(2, limited.asString().lines().count());
+    }
+
+    @Test
+    public void rejectsAnInvalidSort() {
+        assertRejected(Map.of("sort", "nonsense"));
+    }
+
+    @Test
+    public void rejectsAnUnreadableCursor() {
+        assertRejected(Map.of("after", "not a cursor"));
+        assertRejected(Map.of("after", cursor("id\n\nnot-a-number")));
+    }
+
+    @Test
+    public void rejectsTheCursorOfAnotherSortOrder() {
+        assertRejected(Map.of("sort", "quantity", "after", cursor("id\n5\n5")));
+    }
+
+    // Thrown while the resource method runs, not from the StreamingOutput once the status is sent
+    @Test
+    public void checksThePageBeforeTheResponseIsBuilt() {
+        PageRequest request = new PageRequest();
+        request.stream = true;
+        request.sort = "nonsense";
+        assertThrows(InvalidPageRequestException.class, () -> pages.ok(request, () -> fuelRepository.listAllDTOs(request)));
+    }
+
+    private static void assertRejected(Map<String, String> params) {
+        for (String path : new String[]{"/fuel", "/food/expiring-soon"}) {
+            Response response = given().accept(PageRequest.APPLICATION_NDJSON).queryParams(params).get(path);
+            assertEquals(400, response.statusCode(), path + " " + params + ": " + response.asString());
+            assertEquals("application/json", response.contentType().split(";")[0]);
+        }
+    }
+
+    private static String cursor(String decoded) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(decoded.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package org.jonasfroeller.services;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.jonasfroeller.SqlFixtures;
+import org.jonasfroeller.dtos.PageRequest;
+import org.jonasfroeller.repositories.DrinkRepository;
+import org.jonasfroeller.repositories.FoodRepository;
+import org.jonasfroeller.repositories.MedicationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// The expired and expiring-soon lists read from the database and the states the ExpiryIndex notifies about
+// must agree on every date, in particular on the boundaries (today, one month from today)
+@QuarkusTest
+public class ExpiryBoundaryTest {
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    FoodRepository foodRepository;
+    @Inject
+    DrinkRepository drinkRepository;
+    @Inject
+    MedicationRepository medicationRepository;
+
+    private SqlFixtures rows;
+
+    @BeforeEach
+    public void setUp() {
+        rows = new SqlFixtures(dataSource);
+    }
+
+    @AfterEach
+    public void deleteRows() throws SQLException {
+        rows.deleteAll();
+    }
+
+    @Test
+    public void listsAgreeWithTheIndex() throws SQLException {
+        LocalDate today = LocalDate.now();
+        List<LocalDate> dates = List.of(today.minusDays(1), today, today.plusDays(1),
+                today.plusMonths(1).minusDays(1), today.plusMonths(1), today.plusMonths(1).plusDays(1));
+
+        assertAgree(ExpiryIndex.FOOD, insert("food", "type", dates), dates, today,
+                page -> ids(foodRepository.findExpiredItems(page).items, dto -> dto.id),
+                page -> ids(foodRepository.findItemsExpiringSoon(page).items, dto -> dto.id));
+        assertAgree(ExpiryIndex.DRINK, insert("drink", "type", dates), dates, today,
+                page -> ids(drinkRepository.findExpiredItems(page).items, dto -> dto.id),
+                page -> ids(drinkRepository.findItemsExpiringSoon(page).items, dto -> dto.id));
+        assertAgree(ExpiryIndex.MEDICATION, insert("medication", "name", dates), dates, today,
+                page -> ids(medicationRepository.findExpiredItems(page).items, dto -> dto.id),
+                page -> ids(medicationRepository.findItemsExpiringSoon(page).items, dto -> dto.id));
+    }
+
+    // ids holds the row inserted for each of the dates
+    private void assertAgree(String resourceType, List<Long> ids, List<LocalDate> dates, LocalDate today,
+                             Function<PageRequest, Set<Long>> expired, Function<PageRequest, Set<Long>> expiringSoon) {
+        Set<Long> expiredIds = QuarkusTransaction.requiringNew().call(() -> expired.apply(new PageRequest()));
+        Set<Long> expiringSoonIds = QuarkusTransaction.requiringNew().call(() -> expiringSoon.apply(new PageRequest()));
+
+        for (int i = 0; i < dates.size(); i++) {
+            long id = ids.get(i);
+            ExpiryIndex.Entry entry = new ExpiryIndex.Entry(resourceType, id, null, "boundary", dates.get(i), today);
+            String item = resourceType + " expiring " + dates.get(i) + " (today is " + today + ")";
+            assertEquals(entry.state == ExpiryIndex.State.EXPIRED, expiredIds.contains(id), item + " in the expired list");
+            assertEquals(entry.state == ExpiryIndex.State.EXPIRING, expiringSoonIds.contains(id), item + " in the expiring-soon list");
+        }
+    }
+
+    // The API only accepts future expiration dates
+    private List<Long> insert(String table, String labelColumn, List<LocalDate> dates) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        for (LocalDate date : dates) {
+            ids.add(rows.insert(table, labelColumn + ", quantity, expiration_date", "Boundary", 1, date));
+        }
+        return ids;
+    }
+
+    private static <T> Set<Long> ids(List<T> items, Function<T, Long> id) {
+        return items.stream().map(id).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,133 @@
+package org.jonasfroeller.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.jonasfroeller.SqlFixtures;
+import org.jonasfroeller.dtos.FoodDTO;
+import org.jonasfroeller.dtos.MedicationDTO;
+import org.jonasfroeller.dtos.ResourceUpdateMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Changes another instance announces on the UpdateBus arrive as JSON and have to reach the in-memory state
+// of this instance: the expiry index and the mirrored inventory totals
+@QuarkusTest
+public class RemoteUpdateTest {
+
+    @Inject
+    ExpiryIndex expiryIndex;
+
+    @Inject
+    InventoryCounterService inventoryCounters;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    DataSource dataSource;
+
+    private SqlFixtures rows;
+    // Type key of the counter row a test wrote, null if none
+    private String counterTypeKey;
+
+    @BeforeEach
+    public void setUp() {
+        rows = new SqlFixtures(dataSource);
+    }
+
+    // The index and the mirror are rebuilt from what is left in the database
+    @AfterEach
+    public void cleanUp() throws SQLException {
+        rows.deleteAll();
+        if (counterTypeKey != null) {
+            execute("delete from inventory_counter where type_key = ?", counterTypeKey);
+        }
+        expiryIndex.reload();
+        inventoryCounters.invalidateAll();
+    }
+
+    @Test
+    public void expiryIndexAppliesRemoteChanges() throws Exception {
+        LocalDate today = LocalDate.now();
+        long location = SqlFixtures.nextId();
+        long food = SqlFixtures.nextId();
+        long medication = SqlFixtures.nextId();
+
+        expiryIndex.applyRemote(received("CREATE", ExpiryIndex.FOOD, food,
+                new FoodDTO(food, "Rice", 2, today, location)));
+        assertEquals(ExpiryIndex.State.EXPIRING, expiryIndex.state(ExpiryIndex.FOOD, food));
+
+        expiryIndex.applyRemote(received("UPDATE", ExpiryIndex.FOOD, food,
+                new FoodDTO(food, "Rice", 2, today.plusYears(1), location)));
+        assertEquals(ExpiryIndex.State.FRESH, expiryIndex.state(ExpiryIndex.FOOD, food));
+
+        // Batches carry a list of DTOs
+        MedicationDTO expired = new MedicationDTO();
+        expired.id = medication;
+        expired.name = "Ibuprofen";
+        expired.expirationDate = today.minusDays(1);
+        expired.storageLocationId = location;
+        expiryIndex.applyRemote(received("UPDATE", ExpiryIndex.MEDICATION, null, List.of(expired)));
+        assertEquals(ExpiryIndex.State.EXPIRED, expiryIndex.state(ExpiryIndex.MEDICATION, medication));
+
+        expiryIndex.applyRemote(received("DELETE", ExpiryIndex.FOOD, food, null));
+        assertNull(expiryIndex.state(ExpiryIndex.FOOD, food));
+    }
+
+    @Test
+    public void expiryIndexReloadsForChangesWithoutItems() throws Exception {
+        long location = rows.insert("storage_location", "name", "Remote");
+        long food = rows.insert("food", "type, quantity, expiration_date, storage_location_id",
+                "Rice", 2, LocalDate.now(), location);
+
+        // What an import on another instance announces
+        expiryIndex.applyRemote(received("CREATE", ExpiryIndex.FOOD, null, null));
+        assertEquals(ExpiryIndex.State.EXPIRING, expiryIndex.state(ExpiryIndex.FOOD, food));
+    }
+
+    @Test
+    public void inventoryTotalsDropRemoteChanges() throws Exception {
+        counterTypeKey = String.valueOf(SqlFixtures.nextId());
+        execute("insert into inventory_counter (resource_type, type_key, storage_location_id, total_quantity, item_count) "
+                + "values ('Fuel', ?, 0, 20, 1)", counterTypeKey);
+        assertEquals(20, total(counterTypeKey));
+
+        // Another instance added fuel of the type
+        execute("update inventory_counter set total_quantity = 30, item_count = 2 where type_key = ?", counterTypeKey);
+        assertEquals(20, total(counterTypeKey));
+
+        inventoryCounters.invalidate(received("CREATE", InventoryCounterService.FUEL, null, null));
+        assertEquals(30, total(counterTypeKey));
+    }
+
+    private double total(String typeKey) {
+        return QuarkusTransaction.requiringNew().call(() -> inventoryCounters.total(InventoryCounterService.FUEL, typeKey)).quantity();
+    }
+
+    // The message as another instance sends it, its data turns into maps and lists on the way
+    private ResourceUpdateMessage received(String action, String resourceType, Long resourceId, Object data) throws Exception {
+        ResourceUpdateMessage message = new ResourceUpdateMessage(action, resourceType, resourceId, null, "remote");
+        message.data = data;
+        return objectMapper.readValue(objectMapper.writeValueAsString(message), ResourceUpdateMessage.class);
+    }
+
+    private void execute(String sql, String typeKey) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, typeKey);
+            statement.executeUpdate();
+        }
+    }
+}